@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures throughput of a shared script on a {@link ScriptEnginePool} with more threads than engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(8)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @Param({"1", "4", "8"})
+    private int engines;
+
+    private ScriptEnginePool pool;
+    private Script script;
+
+    @Setup
+    public void setUp() throws IOException, ScriptException {
+        StubContainer.install();
+        pool = new ScriptEnginePool("nashorn", engines);
+        pool.warmUp(engines);
+        script = new ScriptLoader(ContentionBenchmark.class.getClassLoader()).load(Scripts.bytes(Scripts.SCRIPT));
+    }
+
+    @Benchmark
+    public Object run() throws ScriptException, InterruptedException {
+        return pool.run(script);
+    }
+
+}
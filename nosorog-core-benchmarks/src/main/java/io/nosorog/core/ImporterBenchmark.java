@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Importer;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.ImportDeclaration;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures prelude generation for explicit, wildcard and static imports.
+ *
+ * <br><br>Wildcard imports are resolved lazily at runtime, here they are expanded eagerly,
+ * as {@link Script#getPrelude()} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImporterBenchmark {
+
+    @Param({"explicit", "wildcard", "static"})
+    private String imports;
+
+    private final Collection<ImportDeclaration> nodes = new ArrayList<>();
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setUp() throws ParseException {
+
+        String[] lines;
+
+        switch (imports) {
+            case "explicit":
+                lines = new String[] {"java.util.List", "java.util.Map", "java.util.Set", "java.util.logging.Logger", "java.util.logging.Level"};
+                break;
+            case "wildcard":
+                lines = new String[] {"java.util.*", "java.util.concurrent.*"};
+                break;
+            default:
+                lines = new String[] {"static java.lang.Math.*", "static java.util.Collections.*"};
+        }
+
+        for (String line : lines) {
+            nodes.add(JavaParser.parseImport("import " + line + ";"));
+        }
+
+        classLoader = ImporterBenchmark.class.getClassLoader();
+
+    }
+
+    @Benchmark
+    public String prelude() throws IOException {
+        Importer importer = new Importer(nodes, classLoader);
+        importer.getPrelude();
+        return importer.getPackagePrelude();
+    }
+
+}
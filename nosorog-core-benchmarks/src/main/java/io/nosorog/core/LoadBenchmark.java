@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ScriptLoader#load(ByteBuffer)} without a script cache.
+ *
+ * <br><br>Imports and the stub class are cached per ClassLoader after the first load,
+ * so this is dominated by header scanning and parsing, see {@link StubBenchmark} for the rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    private ScriptLoader loader;
+    private ByteBuffer script;
+
+    @Setup
+    public void setUp() {
+        StubContainer.install();
+        loader = new ScriptLoader(LoadBenchmark.class.getClassLoader());
+        script = Scripts.bytes(Scripts.SCRIPT);
+    }
+
+    @Benchmark
+    public Script load() throws IOException, ScriptException {
+        return loader.load(script.duplicate());
+    }
+
+}
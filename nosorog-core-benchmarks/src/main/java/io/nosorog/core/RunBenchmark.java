@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Script#runWith(ScriptEngine)}.
+ *
+ * <br><br>A <code>cold</code> run is the first run of a newly loaded script with the engine,
+ * which pays for prelude evaluation and compilation. A <code>warm</code> run reuses both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RunBenchmark {
+
+    @State(Scope.Thread)
+    public static class Engine {
+
+        private ScriptEngine engine;
+        private ScriptLoader loader;
+
+        @Setup
+        public void setUp() {
+            StubContainer.install();
+            engine = new ScriptEngineManager().getEngineByName("nashorn");
+            loader = new ScriptLoader(RunBenchmark.class.getClassLoader());
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Warm {
+
+        private Script script;
+
+        @Setup
+        public void setUp(Engine engine) throws IOException, ScriptException {
+            script = engine.loader.load(Scripts.bytes(Scripts.SCRIPT));
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Cold {
+
+        private Script script;
+
+        @Setup(Level.Invocation)
+        public void setUp(Engine engine) throws IOException, ScriptException {
+            script = engine.loader.load(Scripts.bytes(Scripts.SCRIPT));
+        }
+
+    }
+
+    @Benchmark
+    public Object warm(Engine engine, Warm warm) throws ScriptException {
+        return warm.script.runWith(engine.engine);
+    }
+
+    @Benchmark
+    public Object cold(Engine engine, Cold cold) throws ScriptException {
+        return cold.script.runWith(engine.engine);
+    }
+
+}
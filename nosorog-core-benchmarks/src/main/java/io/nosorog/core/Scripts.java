@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scripts shared by benchmarks.
+ */
+final class Scripts {
+
+    static final String SCRIPT = "/**\n"
+            + " * import java.util.List\n"
+            + " * import java.util.Map\n"
+            + " * import java.util.Set\n"
+            + " * import java.util.logging.Logger\n"
+            + " * import static java.lang.Math.max\n"
+            + " *\n"
+            + " * @Name(\"Benchmark\")\n"
+            + " * @Description(\"Benchmark script\")\n"
+            + " *\n"
+            + " * @Inject List list\n"
+            + " * @Inject Map map\n"
+            + " * @Inject Set set\n"
+            + " */\n"
+            + "var LOG = Logger.getLogger('benchmark');\n"
+            + "max(list.length, map.length) + set;\n";
+
+    private Scripts() {
+    }
+
+    static ByteBuffer bytes(String script) {
+        return ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Metadata;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures script building up to, but excluding, injection.
+ *
+ * <br><br>The <code>fresh</code> benchmark uses a new ClassLoader every time, so that nothing is cached:
+ * the stub class is generated with a new ClassPool, and imports are resolved from scratch.
+ * The difference with <code>cached</code> is the cost of stub generation and import resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StubBenchmark {
+
+    private ClassLoader parent;
+    private ScriptLoader loader;
+    private ByteBuffer script;
+
+    @Setup
+    public void setUp() {
+        parent = StubBenchmark.class.getClassLoader();
+        loader = new ScriptLoader(parent);
+        script = Scripts.bytes(Scripts.SCRIPT);
+    }
+
+    @Benchmark
+    public Metadata fresh() throws ScriptException {
+        return new ScriptLoader(new URLClassLoader(new URL[0], parent)).precompile(script.duplicate());
+    }
+
+    @Benchmark
+    public Metadata cached() throws ScriptException {
+        return loader.precompile(script.duplicate());
+    }
+
+}
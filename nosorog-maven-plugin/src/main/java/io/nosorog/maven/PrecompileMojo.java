@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.maven;
+
+import io.nosorog.core.Precompiler;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Precompiles scripts at build time, see {@link Precompiler}.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;io.nosorog&lt;/groupId&gt;
+ *     &lt;artifactId&gt;nosorog-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;goals&gt;&lt;goal&gt;precompile&lt;/goal&gt;&lt;/goals&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ */
+@Mojo(name = "precompile", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class PrecompileMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project.basedir}/src/main/resources", required = true)
+    private File sourceDirectory;
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    @Parameter(defaultValue = "*.js", required = true)
+    private String includes;
+
+    @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true, required = true)
+    private List<String> classpathElements;
+
+    @Parameter(defaultValue = "false")
+    private boolean failOnError;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+
+        if (!sourceDirectory.isDirectory()) {
+            getLog().info("No scripts to precompile, skipping");
+            return;
+        }
+
+        Map<Path, Exception> failures;
+
+        try (URLClassLoader classLoader = new URLClassLoader(getClasspath(), getClass().getClassLoader())) {
+            failures = new Precompiler(classLoader).precompile(sourceDirectory.toPath(), includes, outputDirectory.toPath());
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Unable to precompile scripts", ex);
+        }
+
+        for (Map.Entry<Path, Exception> failure : failures.entrySet()) {
+            getLog().warn(failure.getKey() + ": " + failure.getValue().getMessage());
+        }
+
+        if (failOnError && !failures.isEmpty()) {
+            throw new MojoFailureException(failures.size() + " script(s) failed to precompile");
+        }
+
+    }
+
+    private URL[] getClasspath() throws MojoExecutionException {
+
+        List<URL> urls = new ArrayList<>();
+
+        try {
+            for (String element : classpathElements) {
+                urls.add(new File(element).toURI().toURL());
+            }
+        } catch (MalformedURLException ex) {
+            throw new MojoExecutionException("Invalid classpath element", ex);
+        }
+
+        return urls.toArray(new URL[urls.size()]);
+
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * EventBus delivers events to scripts that observe them.
+ *
+ * <br><br>A script observes events with a header field, e.g. <code>@Observes OrderPlaced order</code>.
+ * The event is bound to the field name when the script runs. A script observes events of the declared type
+ * and all its subtypes.
+ *
+ * <br><br>Routes are computed once per event class and cached, so the cost of firing an event does not depend
+ * on the number of registered scripts. Registering or unregistering a script invalidates the cached routes.
+ *
+ * <br><br>Observers registered with {@link #registerAll(ScriptLibrary)} follow the library: as scripts are loaded,
+ * reloaded or unloaded, e.g. by {@link ScriptWatcher}, the next event is delivered to the current versions.
+ * A script registered with {@link #register(Script)} is delivered to as is, until it is unregistered.
+ *
+ * <br><br>Every delivery is an isolated run, see {@link ScriptEnginePool#run(Script, Map)}.
+ *
+ * <br><br>Events fired with {@link #fireAsync(Object)} are queued and delivered in order on the executor,
+ * in batches of up to the batch size, with one engine per batch.
+ *
+ * <br><br>To bridge CDI events, declare an observer method in a bean:
+ * <pre>
+ * void bridge(&#64;Observes OrderPlaced event) {
+ *     bus.fireAsync(event);
+ * }
+ * </pre>
+ *
+ * <br><br>Usage:
+ * <pre>
+ * EventBus bus = new EventBus(pool, executor, 64);
+ * bus.register(script);
+ * bus.fire(new OrderPlaced(...));
+ * </pre>
+ */
+public class EventBus {
+
+    private static final Logger LOG = Logger.getLogger(EventBus.class.getName());
+
+    private final ScriptEnginePool pool;
+    private final Executor executor;
+    private final int batchSize;
+
+    private final ListMultimap<Class<?>, Observer> observers = ArrayListMultimap.create();
+    // registered libraries, along with the version their observers were taken from
+    private volatile Map<ScriptLibrary, Long> libraries = ImmutableMap.of();
+    // weak keys, so that event classes of undeployed applications can be unloaded
+    private final Cache<Class<?>, List<Observer>> routes = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Construct an EventBus for synchronous delivery only.
+     * @param pool engines to run observers with
+     */
+    public EventBus(ScriptEnginePool pool) {
+        this(pool, null, 1);
+    }
+
+    /**
+     * Construct an EventBus.
+     * @param pool engines to run observers with
+     * @param executor executor for asynchronous delivery, or null for synchronous delivery only
+     * @param batchSize maximum number of queued events delivered at once
+     */
+    public EventBus(ScriptEnginePool pool, Executor executor, int batchSize) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize should be positive");
+        }
+
+        this.pool = pool;
+        this.executor = executor;
+        this.batchSize = batchSize;
+
+    }
+
+    /**
+     * Registers the observers declared by the script.
+     * @param script script
+     * @throws ScriptException if an observed type can not be resolved
+     */
+    public synchronized void register(Script script) throws ScriptException {
+        add(script, null);
+        routes.invalidateAll();
+    }
+
+    /**
+     * Registers the observers declared by all the scripts in the library, and keeps them up to date
+     * as the library changes.
+     *
+     * Failures to register the observers of scripts loaded later are logged.
+     *
+     * @param library script library
+     * @return failures, keyed by script name
+     */
+    public synchronized Map<String, Exception> registerAll(ScriptLibrary library) {
+
+        // read first, so that a change made while scripts are being registered is noticed later
+        long version = library.getVersion();
+
+        ImmutableMap.Builder<String, Exception> failures = ImmutableMap.builder();
+
+        removeAll(library);
+
+        for (Script script : library.getScripts()) {
+            try {
+                add(script, library);
+            } catch (ScriptException ex) {
+                failures.put(script.getName(), ex);
+            }
+        }
+
+        Map<ScriptLibrary, Long> updated = new HashMap<>(libraries);
+        updated.put(library, version);
+        libraries = ImmutableMap.copyOf(updated);
+
+        routes.invalidateAll();
+
+        return failures.build();
+
+    }
+
+    /**
+     * Removes the observers declared by the scripts in the library, and stops following it.
+     * @param library script library
+     */
+    public synchronized void unregisterAll(ScriptLibrary library) {
+
+        removeAll(library);
+
+        Map<ScriptLibrary, Long> updated = new HashMap<>(libraries);
+        updated.remove(library);
+        libraries = ImmutableMap.copyOf(updated);
+
+        routes.invalidateAll();
+
+    }
+
+    /**
+     * Removes the observers declared by the script.
+     * @param script script
+     */
+    public synchronized void unregister(Script script) {
+
+        for (Iterator<Observer> it = observers.values().iterator(); it.hasNext();) {
+            if (it.next().script == script) {
+                it.remove();
+            }
+        }
+
+        routes.invalidateAll();
+
+    }
+
+    /**
+     * Delivers the event to its observers in the calling thread.
+     *
+     * Delivery stops at the first observer that fails.
+     *
+     * @param event event
+     * @throws ScriptException if an observer has failed
+     * @throws InterruptedException if interrupted while waiting for an engine
+     */
+    public void fire(Object event) throws ScriptException, InterruptedException {
+
+        List<Observer> route = route(event.getClass());
+
+        if (route.isEmpty()) {
+            return;
+        }
+
+        ScriptEngine engine = pool.borrow();
+
+        try {
+            for (Observer observer : route) {
+                observer.deliver(engine, event);
+            }
+        } finally {
+            pool.release(engine);
+        }
+
+    }
+
+    /**
+     * Queues the event for delivery on the executor.
+     *
+     * Failures are logged and do not prevent delivery to other observers.
+     *
+     * @param event event
+     * @throws IllegalStateException if the EventBus has no executor
+     */
+    public void fireAsync(Object event) {
+
+        if (executor == null) {
+            throw new IllegalStateException("no executor for asynchronous delivery");
+        }
+
+        if (!route(event.getClass()).isEmpty()) {
+            queue.add(event);
+            schedule();
+        }
+
+    }
+
+    private List<Observer> route(Class<?> eventClass) {
+
+        for (Map.Entry<ScriptLibrary, Long> entry : libraries.entrySet()) {
+            if (entry.getKey().getVersion() != entry.getValue()) {
+                refresh();
+                break;
+            }
+        }
+
+        List<Observer> route = routes.getIfPresent(eventClass);
+
+        return route != null ? route : computeRoute(eventClass);
+
+    }
+
+    private synchronized void refresh() {
+
+        for (Map.Entry<ScriptLibrary, Long> entry : libraries.entrySet()) {
+            if (entry.getKey().getVersion() != entry.getValue()) {
+                for (Map.Entry<String, Exception> failure : registerAll(entry.getKey()).entrySet()) {
+                    LOG.log(Level.WARNING, "Cannot register observers of script " + failure.getKey(), failure.getValue());
+                }
+            }
+        }
+
+    }
+
+    private void add(Script script, ScriptLibrary library) throws ScriptException {
+
+        Map<String, Class<?>> observed;
+
+        try {
+            observed = script.getObservedTypes();
+        } catch (ClassNotFoundException ex) {
+            throw new ScriptException(ex);
+        }
+
+        for (Map.Entry<String, Class<?>> entry : observed.entrySet()) {
+            observers.put(entry.getValue(), new Observer(script, entry.getKey(), library));
+        }
+
+    }
+
+    private void removeAll(ScriptLibrary library) {
+        for (Iterator<Observer> it = observers.values().iterator(); it.hasNext();) {
+            if (it.next().library == library) {
+                it.remove();
+            }
+        }
+    }
+
+    // synchronized with registration, so that a stale route is never cached
+    private synchronized List<Observer> computeRoute(Class<?> eventClass) {
+
+        ImmutableList.Builder<Observer> builder = ImmutableList.builder();
+
+        for (Class<?> type : TypeToken.of(eventClass).getTypes().rawTypes()) {
+            builder.addAll(observers.get(type));
+        }
+
+        List<Observer> route = builder.build();
+        routes.put(eventClass, route);
+
+        return route;
+
+    }
+
+    // a single drain task at a time keeps asynchronous events in order
+    private void schedule() {
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+    }
+
+    private void drain() {
+
+        try {
+
+            // borrow first, so that events stay queued if interrupted while waiting
+            ScriptEngine engine = pool.borrow();
+
+            try {
+
+                List<Object> batch = new ArrayList<>(batchSize);
+
+                for (Object event; batch.size() < batchSize && (event = queue.poll()) != null;) {
+                    batch.add(event);
+                }
+
+                for (Object event : batch) {
+                    for (Observer observer : route(event.getClass())) {
+                        try {
+                            observer.deliver(engine, event);
+                        } catch (ScriptException | RuntimeException ex) {
+                            LOG.log(Level.WARNING, "Observer " + observer.script.getName() + " failed", ex);
+                        }
+                    }
+                }
+
+            } finally {
+                pool.release(engine);
+            }
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            draining.set(false);
+            schedule();
+        }
+
+    }
+
+    private static class Observer {
+
+        private final Script script;
+        private final String variable;
+        // null for a script registered on its own
+        private final ScriptLibrary library;
+
+        private Observer(Script script, String variable, ScriptLibrary library) {
+            this.script = script;
+            this.variable = variable;
+            this.library = library;
+        }
+
+        private void deliver(ScriptEngine engine, Object event) throws ScriptException {
+            script.run(engine, ImmutableMap.of(variable, event), true);
+        }
+
+    }
+
+}
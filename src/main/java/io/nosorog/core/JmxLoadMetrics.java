@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import io.nosorog.core.internal.PhaseStats;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JmxLoadMetrics keeps statistics of the script loading phases and exposes them over JMX.
+ *
+ * <br><br>For every {@link LoadMetrics.Phase phase}, an MXBean named
+ * <code>io.nosorog:type=LoadMetrics,name=&lt;name&gt;,phase=&lt;phase&gt;</code> provides the count,
+ * the failure count, total, mean and maximum duration, and a histogram of durations
+ * with power of two buckets in microseconds.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * JmxLoadMetrics metrics = new JmxLoadMetrics("default");
+ * ScriptLoader loader = new ScriptLoader(null, null, null, metrics);
+ * </pre>
+ */
+public class JmxLoadMetrics implements LoadMetrics, Closeable {
+
+    private final Map<Phase, PhaseStats> stats = new EnumMap<>(Phase.class);
+    private final Map<Phase, ObjectName> names = new EnumMap<>(Phase.class);
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Construct a JmxLoadMetrics and register its MXBeans with the platform MBean server.
+     * @param name name distinguishing this instance from others
+     * @throws JMException if the MXBeans can not be registered, e.g. if the name is already taken
+     */
+    public JmxLoadMetrics(String name) throws JMException {
+
+        try {
+            for (Phase phase : Phase.values()) {
+                ObjectName objectName = new ObjectName("io.nosorog:type=LoadMetrics,name=" + ObjectName.quote(name) + ",phase=" + phase);
+                stats.put(phase, new PhaseStats());
+                server.registerMBean(stats.get(phase), objectName);
+                // only the names registered so far, so that a taken name is not unregistered on failure
+                names.put(phase, objectName);
+            }
+        } catch (JMException ex) {
+            close();
+            throw ex;
+        }
+
+    }
+
+    @Override
+    public void record(Phase phase, long nanos, boolean failed) {
+        stats.get(phase).record(nanos, failed);
+    }
+
+    /**
+     * Unregisters the MXBeans.
+     */
+    @Override
+    public void close() {
+
+        for (ObjectName name : names.values()) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                // already unregistered
+            }
+        }
+
+    }
+
+}
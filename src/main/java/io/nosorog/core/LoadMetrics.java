@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+/**
+ * LoadMetrics receives timings of the script loading phases.
+ *
+ * <br><br>Implementations must be thread safe, as scripts may be loaded concurrently.
+ * {@link #NOOP} is used unless another implementation is given to {@link ScriptLoader},
+ * see {@link JmxLoadMetrics} for an implementation exposing statistics over JMX.
+ */
+public interface LoadMetrics {
+
+    /**
+     * Script loading phase.
+     */
+    enum Phase {
+
+        /**
+         * Extracting header lines from the script.
+         */
+        SCAN,
+
+        /**
+         * Parsing header lines into imports, annotations and fields.
+         */
+        PARSE,
+
+        /**
+         * Resolving imports and generating the prelude.
+         */
+        IMPORT,
+
+        /**
+         * Generating or defining the stub class.
+         */
+        STUB,
+
+        /**
+         * Creating injection points.
+         */
+        BIND
+
+    }
+
+    /**
+     * Discards all timings.
+     */
+    LoadMetrics NOOP = new LoadMetrics() {
+        @Override
+        public void record(Phase phase, long nanos, boolean failed) {
+        }
+    };
+
+    /**
+     * Records completion of a phase.
+     * @param phase phase
+     * @param nanos duration, in nanoseconds
+     * @param failed whether the phase has failed
+     */
+    void record(Phase phase, long nanos, boolean failed);
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Digests;
+import io.nosorog.core.internal.Fingerprint;
+import io.nosorog.core.internal.Metadata;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MetadataCache persists script metadata on disk, so that it survives JVM restarts.
+ *
+ * <br><br>For every script, the cache stores header lines, generated prelude and, optionally,
+ * stub class bytecode. Entries are keyed by a hash of the script bytes and a fingerprint of the classpath,
+ * so they are ignored as soon as either changes. With a warm cache, {@link ScriptLoader} skips
+ * extracting the header from the script, classpath scanning for imports and stub class generation.
+ * Cached header lines are still parsed into imports, annotations and fields, which is reported as
+ * {@link LoadMetrics.Phase#PARSE}, but most of them are simple enough to bypass JavaParser.
+ *
+ * <br><br>The classpath can only be fingerprinted for chains of URLClassLoaders on top of the system ClassLoader.
+ * Scripts loaded through any other ClassLoader, e.g. that of an application server, are not cached.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * MetadataCache metadata = new MetadataCache(Paths.get("/var/cache/nosorog"), true);
+ * ScriptLoader loader = new ScriptLoader(null, null, metadata);
+ * </pre>
+ */
+public class MetadataCache {
+
+    private static final Logger LOG = Logger.getLogger(MetadataCache.class.getName());
+    private static final String SUFFIX = ".meta";
+
+    private final Path dir;
+    private final boolean stubs;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Construct a MetadataCache storing entries in the given directory.
+     * @param dir cache directory, created if it does not exist
+     * @param stubs whether to store stub class bytecode
+     * @throws IOException if the directory can not be created
+     */
+    public MetadataCache(Path dir, boolean stubs) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.stubs = stubs;
+    }
+
+    boolean isStoringStubs() {
+        return stubs;
+    }
+
+    // null if the classpath cannot be fingerprinted and the metadata cannot be cached
+    String key(ClassLoader classLoader, ByteBuffer bytes) {
+
+        HashCode fingerprint = Fingerprint.of(classLoader);
+
+        if (fingerprint == null) {
+            return null;
+        }
+
+        return Hashing.sha256().newHasher()
+                .putBytes(Digests.sha256(bytes).asBytes())
+                .putBytes(fingerprint.asBytes())
+                .hash()
+                .toString();
+
+    }
+
+    Metadata get(String key) {
+
+        try (InputStream is = Files.newInputStream(dir.resolve(key + SUFFIX))) {
+
+            Metadata metadata = Metadata.read(is);
+            (metadata != null ? hitCount : missCount).incrementAndGet();
+
+            return metadata;
+
+        } catch (NoSuchFileException ex) {
+            missCount.incrementAndGet();
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Ignoring unreadable cache entry " + key, ex);
+            missCount.incrementAndGet();
+        }
+
+        return null;
+
+    }
+
+    void put(String key, Metadata metadata) {
+
+        try {
+
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                (stubs ? metadata : metadata.withoutStub()).write(os);
+            }
+
+            Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to write cache entry " + key, ex);
+        }
+
+    }
+
+    /**
+     * Returns the number of scripts loaded with cached metadata.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of scripts whose metadata was not found in the cache.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Digests;
+import io.nosorog.core.internal.Metadata;
+import io.nosorog.core.internal.Precompiled;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.script.ScriptException;
+
+/**
+ * Precompiler extracts script metadata at build time.
+ *
+ * <br><br>For every script found in the source directory, header lines, generated prelude and stub class
+ * are written under <code>META-INF/nosorog</code> in the output directory, together with an index.
+ * When the output directory ends up on the classpath, {@link ScriptLoader} picks precompiled metadata up
+ * and skips extracting the header from the script, classpath scanning for imports and stub class generation
+ * at runtime. Precompiled header lines are still parsed, see {@link MetadataCache}.
+ *
+ * <br><br>Precompilation does not require a CDI container, only the classes referenced by the scripts.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * java -cp ... io.nosorog.core.Precompiler src/main/resources target/classes
+ * </pre>
+ */
+public class Precompiler {
+
+    private static final String DEFAULT_GLOB = "*.js";
+
+    private final ScriptLoader loader;
+
+    /**
+     * Construct a Precompiler resolving script imports and injected types against the given ClassLoader.
+     * @param classLoader ClassLoader, or null to use the context ClassLoader
+     */
+    public Precompiler(ClassLoader classLoader) {
+        this.loader = new ScriptLoader(classLoader);
+    }
+
+    /**
+     * Precompile all scripts with .js extension found in the source directory tree.
+     * @param sourceDir source directory
+     * @param outputDir output directory, typically the root of compiled classes
+     * @return failures keyed by script path, empty if all scripts have been precompiled
+     * @throws IOException if the source directory can not be walked, or the index can not be written
+     */
+    public Map<Path, Exception> precompile(Path sourceDir, Path outputDir) throws IOException {
+        return precompile(sourceDir, DEFAULT_GLOB, outputDir);
+    }
+
+    /**
+     * Precompile all scripts matching the glob pattern found in the source directory tree.
+     * @param sourceDir source directory
+     * @param glob file name pattern, e.g. <code>*.js</code>
+     * @param outputDir output directory, typically the root of compiled classes
+     * @return failures keyed by script path, empty if all scripts have been precompiled
+     * @throws IOException if the source directory can not be walked, or the index can not be written
+     */
+    public Map<Path, Exception> precompile(final Path sourceDir, String glob, final Path outputDir) throws IOException {
+
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final Set<String> index = new TreeSet<>();
+        final ImmutableMap.Builder<Path, Exception> failures = ImmutableMap.builder();
+
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+
+                if (attrs.isRegularFile() && matcher.matches(file.getFileName())) {
+                    try {
+                        index.add(precompileFile(file, outputDir));
+                    } catch (IOException | ScriptException | RuntimeException ex) {
+                        failures.put(file, ex);
+                    }
+                }
+
+                return FileVisitResult.CONTINUE;
+
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+
+                if (file.equals(sourceDir)) {
+                    throw ex;
+                }
+
+                failures.put(file, ex);
+
+                return FileVisitResult.CONTINUE;
+
+            }
+        });
+
+        Path indexFile = outputDir.resolve(Precompiled.INDEX);
+        Files.createDirectories(indexFile.getParent());
+        Files.write(indexFile, index, StandardCharsets.UTF_8);
+
+        return failures.build();
+
+    }
+
+    private String precompileFile(Path file, Path outputDir) throws IOException, ScriptException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        Metadata metadata = loader.precompile(buffer);
+        String hash = Digests.sha256(buffer).toString();
+
+        // stub bytecode goes into a regular .class resource rather than inside the metadata
+        if (metadata.getStub() != null) {
+            write(outputDir.resolve(Precompiled.getClassResource(metadata.getStubName())), metadata.getStub());
+        }
+
+        Path meta = outputDir.resolve(Precompiled.LOCATION + hash + Precompiled.SUFFIX);
+        Files.createDirectories(meta.getParent());
+
+        try (OutputStream os = Files.newOutputStream(meta)) {
+            metadata.withoutBytecode().write(os);
+        }
+
+        return hash;
+
+    }
+
+    private static void write(Path path, byte[] bytes) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, bytes);
+    }
+
+    /**
+     * Command line entry point.
+     * @param args source directory and output directory
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length != 2) {
+            System.err.println("Usage: Precompiler <source dir> <output dir>");
+            System.exit(2);
+        }
+
+        Map<Path, Exception> failures = new Precompiler(null).precompile(Paths.get(args[0]), Paths.get(args[1]));
+
+        for (Map.Entry<Path, Exception> failure : failures.entrySet()) {
+            System.err.println(failure.getKey() + ": " + failure.getValue().getMessage());
+        }
+
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+
+    }
+
+}
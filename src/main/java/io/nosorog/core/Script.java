@@ -17,42 +17,83 @@
 package io.nosorog.core;
 
 import io.nosorog.core.internal.NoOpVisitor;
+import io.nosorog.core.internal.ImportCache;
 import io.nosorog.core.internal.Importer;
 import io.nosorog.core.internal.Binder;
+import io.nosorog.core.internal.ClassPools;
+import io.nosorog.core.internal.Durations;
+import io.nosorog.core.internal.LazyBindings;
+import io.nosorog.core.internal.Metadata;
+import io.nosorog.core.internal.PackageResolver;
+import io.nosorog.core.internal.StubClassLoader;
 import com.github.javaparser.ast.ImportDeclaration;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LongLiteralExpr;
+import com.github.javaparser.ast.expr.MarkerAnnotationExpr;
+import com.github.javaparser.ast.expr.MemberValuePair;
 import com.github.javaparser.ast.expr.NormalAnnotationExpr;
 import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.ReferenceType;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.SortedSetMultimap;
+import com.google.common.collect.TreeMultimap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.CtField;
-import javassist.CtMethod;
-import javassist.CtNewMethod;
-import javassist.LoaderClassPath;
 import javassist.NotFoundException;
 import javassist.bytecode.AnnotationsAttribute;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.ConstPool;
-import javassist.bytecode.FieldInfo;
 import javassist.bytecode.annotation.Annotation;
 import javassist.compiler.CompileError;
 import javassist.compiler.MemberResolver;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
 
 /**
  * The Script class represents a script together with its metadata.
@@ -63,15 +104,17 @@ import javax.script.ScriptException;
  */
 public class Script {
 
-    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final Logger LOG = Logger.getLogger(Script.class.getName());
 
     private SingleMemberAnnotationExpr nameNode;
     private SingleMemberAnnotationExpr descriptionNode;
 
     private final Collection<ImportDeclaration> importNodes = new ArrayList<>();
 
-    private NormalAnnotationExpr startupNode;
+    private AnnotationExpr startupNode;
     private SingleMemberAnnotationExpr scheduleNode;
+    private SingleMemberAnnotationExpr entryNode;
+    private AnnotationExpr cacheableNode;
 
     private final Collection<FieldDeclaration> observesNodes = new ArrayList<>();
 
@@ -81,7 +124,34 @@ public class Script {
     private final Visitor visitor = new Visitor();
     private final String body;
     private String prelude;
-    private Bindings bindings;
+    private List<String> packages;
+    private volatile String packagePrelude;
+    private ClassLoader classLoader;
+    private String stubSignature;
+    private Class<?> stub;
+    private Binder binder;
+    private List<String> cacheKey;
+    private Cache<Object, Optional<Object>> results;
+
+    // CompiledScript references its engine, so values are soft to let unused engines go eventually
+    private final Cache<ScriptEngine, Prepared> prepared = CacheBuilder.newBuilder()
+            .weakKeys()
+            .softValues()
+            .build();
+
+    // An entry point references its engine, so the weak key never clears by itself. Entry points are
+    // only dropped by release(ScriptEngine) or dispose(), which also release their injected values.
+    private final Cache<ScriptEngine, EntryPoint> entryPoints = CacheBuilder.newBuilder()
+            .weakKeys()
+            .removalListener(new RemovalListener<ScriptEngine, EntryPoint>() {
+                @Override
+                public void onRemoval(RemovalNotification<ScriptEngine, EntryPoint> notification) {
+                    if (notification.getValue() != null) {
+                        notification.getValue().bindings.close();
+                    }
+                }
+            })
+            .build();
 
     private Script(String body) {
         this.body = body;
@@ -89,10 +159,10 @@ public class Script {
 
     /**
      * Returns script name.
-     * @return script name
+     * @return script name, or null if the script has no {@code @Name}
      */
     public String getName() {
-        return ((StringLiteralExpr)nameNode.getMemberValue()).getValue();
+        return nameNode == null ? null : ((StringLiteralExpr)nameNode.getMemberValue()).getValue();
     }
 
     /**
@@ -101,10 +171,29 @@ public class Script {
      * Prelude is a code fragment that needs to be executed before script, so
      * that all the script dependencies are satisfied.
      *
+     * Wildcard imports are expanded into the prelude on the first call to this method.
+     * {@link #runWith(ScriptEngine)} and {@link #runIsolated(ScriptEngine)} do not need that,
+     * as they resolve classes from the imported packages lazily, on first access.
+     *
      * @return script prelude
      */
     public String getPrelude() {
-        return prelude;
+
+        if (packages.isEmpty()) {
+            return prelude;
+        }
+
+        if (packagePrelude == null) {
+            try {
+                packagePrelude = prelude + new Importer(importNodes, classLoader).getPackagePrelude();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, null, ex);
+                return prelude;
+            }
+        }
+
+        return packagePrelude;
+
     }
 
     /**
@@ -121,11 +210,18 @@ public class Script {
      * Bindings produced by this method need to be supplied to {@link javax.script.ScriptEngine}
      * before script execution, so that all the script dependencies are satisfied.
      *
+     * A new instance is returned on every call. Injected values are not resolved
+     * until they are first looked up, so the bindings are cheap to create per invocation
+     * and always reflect the current request or session.
+     *
+     * The returned bindings are {@link java.io.Closeable}. The caller must close them once the script
+     * has run, so that injected {@code @Dependent} instances are destroyed.
+     *
      * @return script bindings
      */
     public Bindings getBindings() {
 
-        return bindings;
+        return binder.getBindings(null);
 
     }
 
@@ -134,21 +230,807 @@ public class Script {
      *
      * It feeds generated bindings and prelude to the engine, and runs the script afterwards.
      *
+     * For every engine, the script keeps a few engine scopes, where the prelude has been evaluated once.
+     * A run takes one of them, and injected values are looked up from a global scope of its own,
+     * so running a script does not set up a new engine scope, and the engine default context is left untouched.
+     * Concurrent runs never share a scope, so the same engine may be used by several threads,
+     * provided that it supports concurrent evaluation in different contexts.
+     * As scopes are reused, top level variables declared by the script may persist from one run to the next,
+     * and which of them a run sees is not defined. Use {@link #runIsolated(ScriptEngine)} for a run
+     * that starts from a clean scope.
+     *
+     * If the engine is {@link Compilable}, the body is compiled on the first run
+     * and compiled code is reused for subsequent runs with the same engine.
+     *
      * @param engine script engine
      * @return result of script execution
      * @throws ScriptException if an exception occurred during script processing
      */
     public Object runWith(ScriptEngine engine) throws ScriptException {
+        return runWith(engine, ImmutableMap.<String, Object>of());
+    }
+
+    /**
+     * Executes the script with the given {@link ScriptEngine} and additional variables.
+     *
+     * Variables are put into the engine scope for the duration of the run, see {@link #runWith(ScriptEngine)}.
+     *
+     * @param engine script engine
+     * @param variables variables to bind, keyed by name
+     * @return result of script execution
+     * @throws ScriptException if an exception occurred during script processing
+     */
+    public Object runWith(ScriptEngine engine, Map<String, ?> variables) throws ScriptException {
+        return run(engine, variables, false);
+    }
+
+    // serves cacheable scripts from the cache, unlike runIsolated
+    Object run(final ScriptEngine engine, final Map<String, ?> variables, final boolean isolated) throws ScriptException {
+
+        if (results == null) {
+            return execute(engine, variables, isolated);
+        }
+
+        try {
+            return results.get(getCacheKey(variables), new Callable<Optional<Object>>() {
+                @Override
+                public Optional<Object> call() throws ScriptException {
+
+                    Object result = execute(engine, variables, isolated);
+
+                    // a script object would keep its engine and global scope reachable from the cache
+                    if (result instanceof Bindings) {
+                        throw new ScriptException("cacheable script returned a script object instead of a Java value");
+                    }
+
+                    return Optional.fromNullable(result);
+
+                }
+            }).orNull();
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), ScriptException.class);
+            throw Throwables.propagate(ex.getCause());
+        }
+
+    }
+
+    // an isolated run gets a scope of its own, which is discarded afterwards
+    private Object execute(ScriptEngine engine, Map<String, ?> variables, boolean isolated) throws ScriptException {
+
+        Prepared p = prepare(engine);
+        Bindings scope = isolated ? p.createScope() : p.takeScope();
+        LazyBindings bindings = binder.getBindings(p.fallback);
+
+        try {
+            scope.putAll(variables);
+            return evalBody(engine, createContext(engine, scope, bindings), p);
+        } finally {
+            bindings.close();
+            if (!isolated) {
+                for (String name : variables.keySet()) {
+                    scope.remove(name);
+                }
+                p.returnScope(scope);
+            }
+        }
+
+    }
+
+    /**
+     * Executes the script with the given {@link ScriptEngine} in an isolated {@link ScriptContext}.
+     *
+     * @param engine script engine
+     * @return result of script execution
+     * @throws ScriptException if an exception occurred during script processing
+     * @see #runIsolated(ScriptEngine, Map)
+     */
+    public Object runIsolated(ScriptEngine engine) throws ScriptException {
+        return runIsolated(engine, ImmutableMap.<String, Object>of());
+    }
+
+    /**
+     * Executes the script with the given {@link ScriptEngine} and variables in an isolated {@link ScriptContext}.
+     *
+     * Unlike {@link #runWith(ScriptEngine, Map)}, the run gets an engine scope of its own, created for this run
+     * and discarded afterwards, so that it never sees top level variables left by earlier runs.
+     * Injected values are freshly resolved, while the engine global scope, the readers and writers
+     * of the engine default context, as well as the compiled code, are shared.
+     * This method never serves the result from the cache of a {@linkplain #isCacheable() cacheable} script.
+     *
+     * @param engine script engine
+     * @param variables variables to bind in the engine scope
+     * @return result of script execution
+     * @throws ScriptException if an exception occurred during script processing
+     */
+    public Object runIsolated(ScriptEngine engine, Map<String, ?> variables) throws ScriptException {
+        return execute(engine, variables, true);
+    }
+
+    /**
+     * Executes the script once per record with the given {@link ScriptEngine}, lazily.
+     *
+     * Setup is done once per batch rather than once per record: the engine scope is created and injected values
+     * are resolved once. For every record, only the record variables are swapped before the body is evaluated.
+     * As a consequence, top level variables declared by the script persist from one record to the next,
+     * but never from one batch to another, as every batch starts from a fresh scope.
+     *
+     * Each step of the returned iterator runs one record, in a context of the batch's own, so runs
+     * with the same engine may be interleaved with the iteration. Injected values are released once
+     * the iteration completes or fails. The iterator is {@link Closeable}, and an iteration abandoned
+     * before the end must be closed to release them. A {@link ScriptException} is rethrown
+     * wrapped into a {@link RuntimeException}.
+     *
+     * <pre>
+     * Iterator&lt;Object&gt; it = script.runBatch(engine, records).iterator();
+     * try {
+     *     Object first = it.next();
+     * } finally {
+     *     ((Closeable) it).close();
+     * }
+     * </pre>
+     *
+     * @param engine script engine
+     * @param records per record variables, keyed by name
+     * @return results of script execution, one per record
+     * @see #runBatch(ScriptEngine, Iterable, Collection)
+     */
+    public Iterable<Object> runBatch(final ScriptEngine engine, final Iterable<? extends Map<String, ?>> records) {
+
+        return new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new BatchIterator(engine, records.iterator());
+            }
+        };
+
+    }
+
+    /**
+     * Executes the script once per record with the given {@link ScriptEngine}, adding results to the sink.
+     *
+     * See {@link #runBatch(ScriptEngine, Iterable)} for how setup is amortized over the batch.
+     *
+     * @param engine script engine
+     * @param records per record variables, keyed by name
+     * @param sink collection receiving results of script execution, one per record
+     * @throws ScriptException if an exception occurred during script processing, the batch is aborted
+     */
+    public void runBatch(ScriptEngine engine, Iterable<? extends Map<String, ?>> records, Collection<Object> sink) throws ScriptException {
+
+        Batch batch = new Batch(engine);
+
+        try {
+            for (Map<String, ?> record : records) {
+                sink.add(batch.run(record));
+            }
+        } finally {
+            batch.close();
+        }
+
+    }
+
+    private static void evalPrelude(ScriptEngine engine, ScriptContext context, Prepared p) throws ScriptException {
+        if (p.compiledPrelude != null) {
+            p.compiledPrelude.eval(context);
+        } else if (!p.prelude.isEmpty()) {
+            engine.eval(p.prelude, context);
+        }
+    }
+
+    private Object evalBody(ScriptEngine engine, ScriptContext context, Prepared p) throws ScriptException {
+        return p.body != null ? p.body.eval(context) : engine.eval(getBody(), context);
+    }
+
+    boolean isStartup() {
+        return startupNode != null;
+    }
+
+    List<String> getDependsOn() {
+
+        List<String> names = new ArrayList<>();
+
+        if (startupNode instanceof NormalAnnotationExpr) {
+            for (MemberValuePair pair : ((NormalAnnotationExpr) startupNode).getPairs()) {
+                if (pair.getName().equals("dependsOn")) {
+                    names.addAll(getStrings(pair.getValue()));
+                }
+            }
+        }
+
+        return names;
+
+    }
+
+    Map<String, Class<?>> getObservedTypes() throws ClassNotFoundException {
+
+        Map<String, Class<?>> observed = new LinkedHashMap<>();
+
+        for (FieldDeclaration node : observesNodes) {
+            ClassOrInterfaceType type = (ClassOrInterfaceType) ((ReferenceType) node.getType()).getType();
+            String name = type.getScope() == null ? type.getName() : type.getScope() + "." + type.getName();
+            observed.put(node.getVariables().get(0).getId().getName(), resolveType(name));
+        }
+
+        return observed;
+
+    }
+
+    // resolves a type name against script imports the way javac would, except for nested types
+    private Class<?> resolveType(String name) throws ClassNotFoundException {
+
+        if (name.indexOf('.') >= 0) {
+            return Class.forName(name, false, classLoader);
+        }
+
+        for (ImportDeclaration node : importNodes) {
+            String fqn = node.getName().toString();
+            if (!node.isStatic() && !node.isAsterisk() && fqn.endsWith("." + name)) {
+                return Class.forName(fqn, false, classLoader);
+            }
+        }
+
+        String fqn = ImportCache.findClass(classLoader, packages, name);
+
+        return Class.forName(fqn != null ? fqn : "java.lang." + name, false, classLoader);
+
+    }
+
+    /**
+     * Returns the number of runs served from the result cache, see {@link #isCacheable()}.
+     * @return hit count, or 0 if the script is not cacheable
+     */
+    public long getCacheHitCount() {
+        return results == null ? 0 : results.stats().hitCount();
+    }
+
+    /**
+     * Returns the number of runs that were not found in the result cache and executed the script.
+     * @return miss count, or 0 if the script is not cacheable
+     */
+    public long getCacheMissCount() {
+        return results == null ? 0 : results.stats().missCount();
+    }
+
+    /**
+     * Returns the number of results evicted from the result cache.
+     * @return eviction count, or 0 if the script is not cacheable
+     */
+    public long getCacheEvictionCount() {
+        return results == null ? 0 : results.stats().evictionCount();
+    }
+
+    /**
+     * Checks whether script results are memoized.
+     *
+     * A script without side effects can be marked with {@code @Cacheable}, so that {@link #runWith(ScriptEngine, Map)}
+     * serves repeated inputs from a bounded cache instead of running the script again:
+     *
+     * <pre>
+     * // @Cacheable(key = {"currency", "amount"}, maxSize = 10000, ttl = "5m")
+     * </pre>
+     *
+     * {@code key} names the variables that make up the cache key, all of the variables passed by the caller
+     * are used if it is omitted, injected beans never are; {@code maxSize} defaults to 1000 entries;
+     * entries do not expire unless {@code ttl} is given.
+     * Results are shared between callers and engines, so they should be immutable Java values, such as strings,
+     * numbers or Java objects. A script object, e.g. a JavaScript object or array, is rejected with a ScriptException
+     * rather than cached, since it would keep the engine reachable.
+     *
+     * @return true if the script is marked with {@code @Cacheable}
+     */
+    public boolean isCacheable() {
+        return cacheableNode != null;
+    }
+
+    private Object getCacheKey(Map<String, ?> variables) {
+
+        // variables passed by the caller, injections are resolved lazily and never show up here
+        if (cacheKey.isEmpty()) {
+            return new HashMap<>(variables);
+        }
+
+        List<Object> key = new ArrayList<>(cacheKey.size());
+
+        for (String name : cacheKey) {
+            key.add(variables.get(name));
+        }
+
+        return key;
+
+    }
+
+    private void createResultCache() throws ScriptException {
+
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        long maxSize = 1000;
+        String ttl = null;
+
+        if (cacheableNode instanceof SingleMemberAnnotationExpr) {
+            checkStrings(cacheableNode, ((SingleMemberAnnotationExpr) cacheableNode).getMemberValue());
+            names.addAll(getStrings(((SingleMemberAnnotationExpr) cacheableNode).getMemberValue()));
+        } else if (cacheableNode instanceof NormalAnnotationExpr) {
+            for (MemberValuePair pair : ((NormalAnnotationExpr) cacheableNode).getPairs()) {
+                switch (pair.getName()) {
+                    case "key":
+                        checkStrings(cacheableNode, pair.getValue());
+                        names.addAll(getStrings(pair.getValue()));
+                        break;
+                    case "maxSize":
+                        maxSize = getSize(cacheableNode, pair.getValue());
+                        break;
+                    case "ttl":
+                        checkString(cacheableNode, pair.getValue());
+                        ttl = ((StringLiteralExpr) pair.getValue()).getValue();
+                        checkDuration(cacheableNode, ttl);
+                        break;
+                    default:
+                        LOG.log(Level.WARNING, "Unknown @Cacheable attribute {0}", pair.getName());
+                }
+            }
+        }
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats();
+
+        if (ttl != null) {
+            builder.expireAfterWrite(Durations.parse(ttl), TimeUnit.NANOSECONDS);
+        }
+
+        cacheKey = names.build();
+        results = builder.build();
+
+    }
+
+    private static List<String> getStrings(Expression value) {
+
+        List<String> strings = new ArrayList<>();
+        List<Expression> values = value instanceof ArrayInitializerExpr
+                ? ((ArrayInitializerExpr) value).getValues()
+                : Collections.singletonList(value);
+
+        for (Expression string : values) {
+            strings.add(((StringLiteralExpr) string).getValue());
+        }
+
+        return strings;
+
+    }
+
+    // the parser accepts any expression as an annotation value, so types are checked once, when the script is built
+    private void validate() throws ScriptException {
+
+        if (entryNode != null) {
+            checkString(entryNode, entryNode.getMemberValue());
+        }
+
+        if (startupNode instanceof NormalAnnotationExpr) {
+            for (MemberValuePair pair : ((NormalAnnotationExpr) startupNode).getPairs()) {
+                if (pair.getName().equals("dependsOn")) {
+                    checkStrings(startupNode, pair.getValue());
+                }
+            }
+        }
+
+        if (scheduleNode != null) {
+            checkString(scheduleNode, scheduleNode.getMemberValue());
+            checkDuration(scheduleNode, getSchedule());
+        }
+
+    }
+
+    private static void checkStrings(AnnotationExpr node, Expression value) throws ScriptException {
+
+        if (value instanceof ArrayInitializerExpr) {
+            for (Expression string : ((ArrayInitializerExpr) value).getValues()) {
+                checkString(node, string);
+            }
+        } else {
+            checkString(node, value);
+        }
+
+    }
+
+    private static long getSize(AnnotationExpr node, Expression value) throws ScriptException {
+
+        long size = -1;
+
+        if (value instanceof IntegerLiteralExpr || value instanceof LongLiteralExpr) {
+            try {
+                size = Long.parseLong(((StringLiteralExpr) value).getValue().replaceAll("[_lL]", ""));
+            } catch (NumberFormatException ex) {
+                // e.g. hexadecimal
+            }
+        }
+
+        if (size < 0) {
+            throw new ScriptException(String.format("non-negative decimal integer expected in %s", node));
+        }
+
+        return size;
+
+    }
+
+    private static void checkDuration(AnnotationExpr node, String duration) throws ScriptException {
+
+        long nanos;
+
+        try {
+            nanos = Durations.parse(duration);
+        } catch (IllegalArgumentException ex) {
+            throw new ScriptException(String.format("invalid duration in %s", node));
+        }
+
+        if (nanos <= 0) {
+            throw new ScriptException(String.format("positive duration expected in %s", node));
+        }
+
+    }
+
+    private static void checkString(AnnotationExpr node, Expression value) throws ScriptException {
+        // numeric and char literals extend StringLiteralExpr
+        if (value == null || value.getClass() != StringLiteralExpr.class) {
+            throw new ScriptException(String.format("string literal expected in %s", node));
+        }
+    }
+
+    String getSchedule() {
+        return scheduleNode == null ? null : ((StringLiteralExpr) scheduleNode.getMemberValue()).getValue();
+    }
+
+    /**
+     * Returns the name of the entry function.
+     * @return entry function name, or null if the script has no {@code @Entry}
+     */
+    public String getEntry() {
+        return entryNode == null ? null : ((StringLiteralExpr) entryNode.getMemberValue()).getValue();
+    }
+
+    /**
+     * Invokes the entry function of the script, declared with {@code @Entry("name")}.
+     *
+     * The script is evaluated top to bottom only once per engine, on the first call, in a scope that
+     * is kept for subsequent calls. The function is then called through {@link Invocable}, so any
+     * expensive initialization done by the script is not repeated.
+     *
+     * Injected values are resolved on first use and kept along with the scope, which is fine for
+     * normal scoped beans, as those are injected as client proxies, but means that a {@code @Dependent}
+     * instance is shared by all the calls with the engine. The scope is kept until the engine is
+     * {@linkplain #release(ScriptEngine) released}.
+     *
+     * @param engine script engine, which must be {@link Invocable}
+     * @param args function arguments
+     * @return function result
+     * @throws ScriptException if the script declares no entry function, or if an exception occurred
+     * during script processing
+     * @throws NoSuchMethodException if the script does not define the entry function
+     * @see #release(ScriptEngine)
+     */
+    public Object invoke(ScriptEngine engine, Object... args) throws ScriptException, NoSuchMethodException {
+
+        if (!(engine instanceof Invocable)) {
+            throw new IllegalArgumentException("engine is not Invocable");
+        }
+
+        EntryPoint entryPoint = getEntryPoint(engine);
+
+        return ((Invocable) engine).invokeMethod(entryPoint.self, entryPoint.function, args);
 
-        engine.setBindings(getBindings(), ScriptContext.ENGINE_SCOPE);
-        engine.eval(getPrelude());
+    }
+
+    private EntryPoint getEntryPoint(final ScriptEngine engine) throws ScriptException {
+
+        final String entry = getEntry();
+
+        if (entry == null) {
+            throw new ScriptException("script has no @Entry");
+        }
+
+        try {
+            return entryPoints.get(engine, new Callable<EntryPoint>() {
+                @Override
+                public EntryPoint call() throws ScriptException {
+                    return new EntryPoint(engine, prepare(engine), entry);
+                }
+            });
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), ScriptException.class);
+            throw Throwables.propagate(ex.getCause());
+        }
+
+    }
+
+    /**
+     * Discards what the script keeps for the given engine: compiled code, engine scopes, and the scope
+     * of the entry function along with its injected values.
+     *
+     * This should be called before an engine the script was run or invoked with is discarded,
+     * as the entry function scope references the engine and would otherwise keep it forever.
+     *
+     * @param engine script engine
+     */
+    public void release(ScriptEngine engine) {
+        entryPoints.invalidate(engine);
+        prepared.invalidate(engine);
+    }
+
+    void dispose() {
+        prepared.invalidateAll();
+        entryPoints.invalidateAll();
+        if (results != null) {
+            results.invalidateAll();
+        }
+    }
+
+    Metadata getMetadata(List<String> header) {
+        return new Metadata(header, prelude, stubSignature, stub.getName(), StubClassLoader.getBytecode(stub));
+    }
+
+    private static ScriptContext createContext(ScriptEngine engine, Bindings scope, Bindings globals) {
+
+        ScriptContext defaults = engine.getContext();
+        ScriptContext context = new SimpleScriptContext();
+
+        context.setBindings(scope, ScriptContext.ENGINE_SCOPE);
+        context.setBindings(globals, ScriptContext.GLOBAL_SCOPE);
+        context.setReader(defaults.getReader());
+        context.setWriter(defaults.getWriter());
+        context.setErrorWriter(defaults.getErrorWriter());
+
+        return context;
+
+    }
+
+    private Prepared prepare(final ScriptEngine engine) throws ScriptException {
+
+        try {
+            return prepared.get(engine, new Callable<Prepared>() {
+                @Override
+                public Prepared call() throws ScriptException {
+                    return new Prepared(engine, prelude, getBody(), classLoader, packages);
+                }
+            });
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), ScriptException.class);
+            throw Throwables.propagate(ex.getCause());
+        }
+
+    }
+
+    private class EntryPoint {
+
+        private final LazyBindings bindings;
+        private final Object self;
+        private final String function;
+
+        private EntryPoint(ScriptEngine engine, Prepared p, String function) throws ScriptException {
+
+            this.bindings = binder.getBindings(p.fallback);
+            this.function = function;
+
+            try {
+
+                // bindings of an arbitrary type get an engine global of their own, kept for later invocations
+                ScriptContext context = createContext(engine, bindings, engine.getBindings(ScriptContext.GLOBAL_SCOPE));
+                evalPrelude(engine, context, p);
+                evalBody(engine, context, p);
+
+                // Invocable reports a missing entry function as NoSuchMethodException
+                self = engine.eval("this", context);
+
+            } catch (ScriptException | RuntimeException ex) {
+                bindings.close();
+                throw ex;
+            }
+
+        }
+
+    }
+
+    private class Batch {
+
+        private final ScriptEngine engine;
+        private final Prepared prepared;
+        private final Bindings scope;
+        private final LazyBindings bindings;
+        private final ScriptContext context;
+        private final Set<String> variables = new HashSet<>();
+
+        private Batch(ScriptEngine engine) throws ScriptException {
+
+            this.engine = engine;
+
+            prepared = prepare(engine);
+            scope = prepared.createScope();
+            bindings = binder.getBindings(prepared.fallback);
+            context = createContext(engine, scope, bindings);
+
+        }
 
-        return engine.eval(getBody());
+        private Object run(Map<String, ?> record) throws ScriptException {
+
+            for (String name : variables) {
+                if (!record.containsKey(name)) {
+                    scope.remove(name);
+                }
+            }
+
+            variables.clear();
+            variables.addAll(record.keySet());
+            scope.putAll(record);
+
+            return evalBody(engine, context, prepared);
+
+        }
+
+        private void close() {
+
+            // the scope is discarded, so the record variables need not be removed
+            bindings.close();
+
+        }
+
+    }
+
+    private class BatchIterator extends AbstractIterator<Object> implements Closeable {
+
+        private final ScriptEngine engine;
+        private final Iterator<? extends Map<String, ?>> records;
+        private Batch batch;
+        private boolean closed;
+
+        private BatchIterator(ScriptEngine engine, Iterator<? extends Map<String, ?>> records) {
+            this.engine = engine;
+            this.records = records;
+        }
+
+        @Override
+        protected Object computeNext() {
+
+            if (closed || !records.hasNext()) {
+                close();
+                return endOfData();
+            }
+
+            try {
+                if (batch == null) {
+                    batch = new Batch(engine);
+                }
+                return batch.run(records.next());
+            } catch (ScriptException | RuntimeException ex) {
+                close();
+                throw Throwables.propagate(ex);
+            }
+
+        }
+
+        @Override
+        public void close() {
+
+            if (batch != null) {
+                batch.close();
+                batch = null;
+            }
+
+            closed = true;
+
+        }
+
+    }
+
+    private static class Prepared {
+
+        private final ScriptEngine engine;
+
+        // classes from wildcard imports, null if there are none
+        private final PackageResolver resolver;
+
+        // names not found in the engine scope, nor injected
+        private final Function<String, Object> fallback;
+
+        private final String prelude;
+        private final CompiledScript compiledPrelude;
+        private final CompiledScript body;
+
+        // type handles bound by the prelude, shared by reference by all the scopes
+        private final Map<String, Object> handles;
+
+        // engine scopes with the prelude handles bound, not in use by any run
+        private final Queue<Bindings> scopes = new ConcurrentLinkedQueue<>();
+
+        private Prepared(final ScriptEngine engine, String prelude, String body, ClassLoader classLoader, List<String> packages) throws ScriptException {
+
+            this.engine = engine;
+            this.prelude = prelude;
+
+            if (packages.isEmpty()) {
+                this.resolver = null;
+            } else {
+                ScriptContext context = createContext(engine, engine.createBindings(), engine.getBindings(ScriptContext.GLOBAL_SCOPE));
+                this.resolver = new PackageResolver(engine, context, classLoader, packages);
+            }
+
+            this.fallback = new Function<String, Object>() {
+                @Override
+                public Object apply(String name) {
+
+                    Bindings globals = engine.getBindings(ScriptContext.GLOBAL_SCOPE);
+
+                    if (globals != null && globals.containsKey(name)) {
+                        return globals.get(name);
+                    }
+
+                    return resolver == null ? null : resolver.apply(name);
+
+                }
+            };
+
+            if (engine instanceof Compilable) {
+                Compilable compilable = (Compilable) engine;
+                this.compiledPrelude = prelude.isEmpty() ? null : compilable.compile(prelude);
+                this.body = compilable.compile(body);
+            } else {
+                this.compiledPrelude = null;
+                this.body = null;
+            }
+
+            // the prelude is evaluated once per engine, later scopes get its handles copied
+            Bindings scope = engine.createBindings();
+            Set<String> names = new HashSet<>(scope.keySet());
+            evalPrelude(engine, createContext(engine, scope, engine.getBindings(ScriptContext.GLOBAL_SCOPE)), this);
+
+            Map<String, Object> bound = new HashMap<>();
+            for (Map.Entry<String, Object> entry : scope.entrySet()) {
+                if (!names.contains(entry.getKey())) {
+                    bound.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            this.handles = Collections.unmodifiableMap(bound);
+            scopes.add(scope);
+
+        }
+
+        private Bindings takeScope() {
+            Bindings scope = scopes.poll();
+            return scope != null ? scope : createScope();
+        }
+
+        private void returnScope(Bindings scope) {
+            scopes.offer(scope);
+        }
+
+        private Bindings createScope() {
+            Bindings scope = engine.createBindings();
+            scope.putAll(handles);
+            return scope;
+        }
 
     }
 
     private class Visitor extends NoOpVisitor {
 
+        @Override
+        public void visit(MarkerAnnotationExpr node, Script script) {
+
+            String name = node.getName().getName();
+
+            switch (name) {
+
+                case "Startup":
+                    startupNode = node;
+                    break;
+
+                case "Cacheable":
+                    cacheableNode = node;
+                    break;
+
+                default:
+
+            }
+
+        }
+
         @Override
         public void visit(NormalAnnotationExpr node, Script script) {
 
@@ -160,6 +1042,10 @@ public class Script {
                     startupNode = node;
                     break;
 
+                case "Cacheable":
+                    cacheableNode = node;
+                    break;
+
                 default:
 
             }
@@ -185,6 +1071,14 @@ public class Script {
                     scheduleNode = node;
                     break;
 
+                case "Entry":
+                    entryNode = node;
+                    break;
+
+                case "Cacheable":
+                    cacheableNode = node;
+                    break;
+
                 default:
 
             }
@@ -232,29 +1126,24 @@ public class Script {
         private final Logger LOG = Logger.getLogger(StubBuilder.class.getName());
         private static final String STUB = "io.nosorog.core.internal.Stub";
 
+        private final ClassLoader classLoader;
+        private final boolean keepBytecode;
         private final ClassPool pool;
         private final MemberResolver resolver;
-        private final Collection<String> fields = new ArrayList<>();
-
-        private StubBuilder(ClassLoader classLoader) {
+        private final SortedMap<String, String> types = new TreeMap<>();
+        private final SortedSetMultimap<String, String> annotations = TreeMultimap.create();
 
-            pool = new ClassPool(true);
+        private StubBuilder(ClassLoader classLoader, boolean keepBytecode) {
 
-            pool.appendClassPath(new LoaderClassPath(classLoader));
-
-            pool.importPackage("javax.script");
-            pool.importPackage("javax.inject");
-            pool.importPackage("javax.enterprise.inject");
-            pool.importPackage("javax.annotation");
-            pool.importPackage("javax.persistence");
-            pool.importPackage("javax.ejb.EJB");
-            pool.importPackage("javax.xml.ws.WebServiceRef");
+            this.classLoader = classLoader;
+            this.keepBytecode = keepBytecode;
 
+            pool = ClassPools.newChild(classLoader);
             resolver = new MemberResolver(pool);
 
         }
 
-        private Class build() throws CannotCompileException {
+        private Class<?> build() throws CannotCompileException, IOException {
 
             for (ImportDeclaration node : importNodes) {
                 if (!node.isStatic()) {
@@ -262,14 +1151,6 @@ public class Script {
                 }
             }
 
-            CtClass ctClass = pool.makeClass(
-                String.format("%s$%s$%d", STUB, getName(), SEQUENCE.incrementAndGet())
-            );
-
-            ClassFile classFile = ctClass.getClassFile();
-            ConstPool constPool = classFile.getConstPool();
-            classFile.setInterfaces(new String[] { STUB });
-
             for (FieldDeclaration inject : injectNodes) {
 
                 String name = inject.getVariables().get(0).getId().getName();
@@ -278,43 +1159,94 @@ public class Script {
 
                 try {
 
+                    if (types.containsKey(name)) {
+                        throw new CannotCompileException("duplicate field: " + name);
+                    }
+
                     String fqn = resolve(coiType.getName());
-                    CtField field = new CtField(pool.get(fqn), name, ctClass);
-                    ctClass.addField(field);
-                    FieldInfo info = field.getFieldInfo();
+                    Collection<String> afqns = new ArrayList<>();
 
                     for (AnnotationExpr node : inject.getAnnotations()) {
-                        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
-                        String afqn = resolve(node.getName().getName());
-                        Annotation annotation = new Annotation(afqn, constPool);
-                        attribute.setAnnotation(annotation);
-                        info.addAttribute(attribute);
+                        afqns.add(resolve(node.getName().getName()));
                     }
 
-                    fields.add(name);
+                    types.put(name, fqn);
+                    annotations.putAll(name, afqns);
 
-                } catch (CompileError | CannotCompileException | NotFoundException ex) {
+                } catch (CompileError | CannotCompileException ex) {
                     LOG.log(Level.SEVERE, null, ex);
                 }
 
             }
 
-            StringBuilder src = new StringBuilder();
+            stubSignature = getSignature();
+            Class<?> clazz = StubClassLoader.getStub(classLoader, stubSignature);
+
+            if (clazz != null && (!keepBytecode || StubClassLoader.getBytecode(clazz) != null)) {
+                return clazz;
+            }
+
+            return generate(stubSignature);
+
+        }
+
+        private String getSignature() {
 
-            src.append("public Bindings getBindings() {");
-            src.append(" SimpleBindings bindings = new SimpleBindings();");
+            StringBuilder signature = new StringBuilder();
 
-            for (String name : fields) {
-                src.append(String.format(" bindings.put(\"%s\", %s);", name, name));
+            for (Map.Entry<String, String> entry : types.entrySet()) {
+                signature.append(entry.getKey()).append(':').append(entry.getValue());
+                for (String annotation : annotations.get(entry.getKey())) {
+                    signature.append('@').append(annotation);
+                }
+                signature.append(';');
+            }
+
+            return signature.toString();
+
+        }
+
+        private Class<?> generate(String signature) throws CannotCompileException, IOException {
+
+            String className = StubClassLoader.getName(signature);
+            CtClass ctClass = pool.makeClass(className);
+
+            try {
+                return StubClassLoader.define(classLoader, signature, className, compile(ctClass), keepBytecode);
+            } finally {
+                ctClass.detach();
             }
 
-            src.append(" return bindings;");
-            src.append("}");
+        }
+
+        private byte[] compile(CtClass ctClass) throws CannotCompileException, IOException {
 
-            CtMethod method = CtNewMethod.make(src.toString(), ctClass);
-            ctClass.addMethod(method);
+            ClassFile classFile = ctClass.getClassFile();
+            ConstPool constPool = classFile.getConstPool();
+            classFile.setInterfaces(new String[] { STUB });
+
+            for (Map.Entry<String, String> entry : types.entrySet()) {
+
+                String name = entry.getKey();
+
+                try {
+
+                    CtField field = new CtField(pool.get(entry.getValue()), name, ctClass);
+                    ctClass.addField(field);
+
+                    AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+                    for (String afqn : annotations.get(name)) {
+                        attribute.addAnnotation(new Annotation(afqn, constPool));
+                    }
+                    field.getFieldInfo().addAttribute(attribute);
+
+                } catch (CannotCompileException | NotFoundException ex) {
+                    LOG.log(Level.SEVERE, null, ex);
+                }
+
+            }
 
-            return ctClass.toClass();
+            return ctClass.toBytecode();
 
         }
 
@@ -324,36 +1256,98 @@ public class Script {
 
     }
 
-    static Builder builder(Collection<Node> nodes, String body, ClassLoader classLoader) {
-        return new Script(body).new Builder(nodes, classLoader);
+    static Builder builder(Collection<Node> nodes, String body, ClassLoader classLoader, LoadMetrics metrics, boolean keepBytecode) {
+        return new Script(body).new Builder(nodes, classLoader, metrics, keepBytecode);
     }
 
     class Builder {
 
         private final Collection<Node> nodes;
         private final ClassLoader classLoader;
+        private final LoadMetrics metrics;
+        private final boolean keepBytecode;
 
-        private Builder(Collection<Node> nodes, ClassLoader classLoader) {
+        // stub bytecode is only kept if the script metadata is to be persisted
+        private Builder(Collection<Node> nodes, ClassLoader classLoader, LoadMetrics metrics, boolean keepBytecode) {
             this.nodes = nodes;
             this.classLoader = classLoader;
+            this.metrics = metrics;
+            this.keepBytecode = keepBytecode;
         }
 
         Script build() throws ScriptException {
+            return build(null);
+        }
+
+        Script build(Metadata metadata) throws ScriptException {
+
+            prepare(metadata);
+
+            long start = System.nanoTime();
+            boolean failed = true;
+
+            try {
+                binder = new Binder(stub);
+                failed = false;
+            } finally {
+                metrics.record(LoadMetrics.Phase.BIND, System.nanoTime() - start, failed);
+            }
+
+            return Script.this;
+
+        }
+
+        Script prepare(Metadata metadata) throws ScriptException {
 
             for (Node node : nodes) {
                 node.accept(visitor, null);
             }
 
+            validate();
+
+            ImmutableList.Builder<String> wildcards = ImmutableList.builder();
+
+            for (ImportDeclaration node : importNodes) {
+                if (!node.isStatic() && node.isAsterisk()) {
+                    wildcards.add(node.getName().toString());
+                }
+            }
+
+            packages = wildcards.build();
+            Script.this.classLoader = classLoader;
+
+            if (cacheableNode != null) {
+                createResultCache();
+            }
+
+            long start = System.nanoTime();
+            boolean failed = true;
+
+            try {
+                prelude = metadata != null ? metadata.getPrelude() : new Importer(importNodes, classLoader).getPrelude();
+                failed = false;
+            } finally {
+                metrics.record(LoadMetrics.Phase.IMPORT, System.nanoTime() - start, failed);
+            }
+
+            start = System.nanoTime();
+            failed = true;
+
             try {
 
-                StubBuilder stubBuilder = new StubBuilder(classLoader);
-                Importer importer = new Importer(importNodes, classLoader);
+                if (metadata != null && metadata.getStub() != null) {
+                    stubSignature = metadata.getStubSignature();
+                    stub = StubClassLoader.define(classLoader, stubSignature, metadata.getStubName(), metadata.getStub(), keepBytecode);
+                } else {
+                    stub = new StubBuilder(classLoader, keepBytecode).build();
+                }
 
-                prelude = importer.getPrelude();
-                bindings = Binder.getBindings(stubBuilder.build());
+                failed = false;
 
-            } catch (IOException | CannotCompileException | InstantiationException | IllegalAccessException e) {
+            } catch (IOException | CannotCompileException e) {
                 throw new ScriptException(e);
+            } finally {
+                metrics.record(LoadMetrics.Phase.STUB, System.nanoTime() - start, failed);
             }
 
             return Script.this;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Digests;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.script.ScriptException;
+
+/**
+ * ScriptCache keeps already built {@link Script} objects, so that loading the same script text again
+ * does not repeat header parsing, stub generation and injection.
+ *
+ * <br><br>Scripts are keyed by a hash of the script bytes and the identity of the {@link ClassLoader}
+ * they were loaded with, so a single cache may be shared by several {@link ScriptLoader} instances.
+ * The least recently used scripts of a ClassLoader are evicted once they reach the maximum size.
+ *
+ * <br><br>Every script references its ClassLoader, so scripts are only softly referenced: those of
+ * an undeployed application, and the ClassLoader along with them, are let go when memory runs low,
+ * or right away with {@link #invalidate(ClassLoader)}.
+ */
+public class ScriptCache {
+
+    private final LoadingCache<ClassLoader, Cache<HashCode, Script>> caches;
+
+    /**
+     * Construct a ScriptCache holding at most the given number of scripts per {@link ClassLoader}.
+     * @param maximumSize maximum number of cached scripts per ClassLoader
+     */
+    public ScriptCache(final long maximumSize) {
+        caches = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build(new CacheLoader<ClassLoader, Cache<HashCode, Script>>() {
+                    @Override
+                    public Cache<HashCode, Script> load(ClassLoader classLoader) {
+                        return CacheBuilder.newBuilder()
+                                .maximumSize(maximumSize)
+                                .softValues()
+                                .recordStats()
+                                .build();
+                    }
+                });
+    }
+
+    Script get(ClassLoader classLoader, ByteBuffer bytes, Callable<Script> loader) throws IOException, ScriptException {
+
+        try {
+            return caches.getUnchecked(classLoader).get(Digests.sha256(bytes), loader);
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+            Throwables.propagateIfInstanceOf(ex.getCause(), ScriptException.class);
+            throw Throwables.propagate(ex.getCause());
+        }
+
+    }
+
+    /**
+     * Returns the number of cached scripts.
+     * @return number of cached scripts
+     */
+    public long size() {
+
+        long size = 0;
+
+        for (Cache<HashCode, Script> cache : caches.asMap().values()) {
+            size += cache.size();
+        }
+
+        return size;
+
+    }
+
+    /**
+     * Returns the number of loads served from the cache.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return stats().hitCount();
+    }
+
+    /**
+     * Returns the number of loads that had to build a new script.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return stats().missCount();
+    }
+
+    /**
+     * Returns the number of scripts evicted due to the size limit or to low memory.
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return stats().evictionCount();
+    }
+
+    /**
+     * Discards the scripts loaded with the given {@link ClassLoader}, typically when an application is undeployed.
+     * @param classLoader ClassLoader of the scripts
+     */
+    public void invalidate(ClassLoader classLoader) {
+        caches.invalidate(classLoader);
+    }
+
+    /**
+     * Discards all cached scripts.
+     */
+    public void invalidateAll() {
+        caches.invalidateAll();
+    }
+
+    private CacheStats stats() {
+
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+        for (Cache<HashCode, Script> cache : caches.asMap().values()) {
+            stats = stats.plus(cache.stats());
+        }
+
+        return stats;
+
+    }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * ScriptEnginePool keeps a bounded number of {@link ScriptEngine} instances for reuse.
+ *
+ * <br><br>Engines are created lazily up to the pool size, or upfront with {@link #warmUp(int)}.
+ * A thread preferably gets back the engine it used last time, so that code compiled for that engine
+ * stays hot. Engine scope bindings are cleared whenever an engine is returned to the pool, although
+ * a script evaluated directly may declare variables that can not be removed. Scripts run with
+ * {@link Script#runWith(ScriptEngine)} do not touch the engine scope at all.
+ * Scripts run with {@link #run(Script)} are isolated, see {@link Script#runIsolated(ScriptEngine)}:
+ * a run never sees top level variables left by earlier runs, whichever engine they used.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * ScriptEnginePool pool = new ScriptEnginePool("nashorn", 8);
+ * pool.warmUp(8);
+ * Object res = pool.run(script);
+ * </pre>
+ *
+ * <br><br>Closing the pool releases what the scripts run through it keep for its engines.
+ */
+public class ScriptEnginePool implements Closeable {
+
+    private final ScriptEngineFactory factory;
+    private final AtomicReferenceArray<ScriptEngine> engines;
+    private final AtomicBoolean[] busy;
+    private final Semaphore permits;
+    private final ThreadLocal<Integer> affinity = new ThreadLocal<>();
+
+    // scripts run through the pool, to be released from its engines on close
+    private final Set<Script> scripts = Collections.newSetFromMap(CacheBuilder.newBuilder().weakKeys().<Script, Boolean>build().asMap());
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Construct a ScriptEnginePool for the engine with the given name.
+     * @param name engine name, as understood by {@link ScriptEngineManager#getEngineByName(String)}
+     * @param size maximum number of engines
+     */
+    public ScriptEnginePool(String name, int size) {
+        this(getFactory(name), size);
+    }
+
+    /**
+     * Construct a ScriptEnginePool for the given {@link ScriptEngineFactory}.
+     * @param factory engine factory
+     * @param size maximum number of engines
+     */
+    public ScriptEnginePool(ScriptEngineFactory factory, int size) {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("size should be positive");
+        }
+
+        this.factory = factory;
+
+        engines = new AtomicReferenceArray<>(size);
+        busy = new AtomicBoolean[size];
+        permits = new Semaphore(size, true);
+
+        for (int i = 0; i < size; i++) {
+            busy[i] = new AtomicBoolean();
+        }
+
+    }
+
+    /**
+     * Creates engines upfront, so that first runs do not pay for engine creation.
+     * @param count number of engines to create, capped by the pool size
+     */
+    public void warmUp(int count) {
+        for (int i = 0; i < Math.min(count, engines.length()); i++) {
+            engine(i);
+        }
+    }
+
+    /**
+     * Takes an engine from the pool, waiting for one to become available if necessary.
+     *
+     * The engine must be given back with {@link #release(ScriptEngine)}.
+     *
+     * @return script engine
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ScriptEngine borrow() throws InterruptedException {
+
+        long start = System.nanoTime();
+        permits.acquire();
+        record(System.nanoTime() - start);
+
+        Integer preferred = affinity.get();
+
+        if (preferred != null && busy[preferred].compareAndSet(false, true)) {
+            return take(preferred);
+        }
+
+        // a permit guarantees that at least one slot is free
+        for (int i = 0; ; i = (i + 1) % busy.length) {
+            if (busy[i].compareAndSet(false, true)) {
+                affinity.set(i);
+                return take(i);
+            }
+        }
+
+    }
+
+    /**
+     * Gives an engine back to the pool and clears its engine scope.
+     * @param engine engine obtained from {@link #borrow()}
+     * @throws IllegalStateException if the engine has already been given back
+     */
+    public void release(ScriptEngine engine) {
+
+        for (int i = 0; i < engines.length(); i++) {
+            if (engines.get(i) == engine) {
+
+                if (!busy[i].get()) {
+                    throw new IllegalStateException("engine has already been released");
+                }
+
+                try {
+                    engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+                } finally {
+                    // of two concurrent releases, only one gives the permit back
+                    if (busy[i].compareAndSet(true, false)) {
+                        permits.release();
+                    }
+                }
+
+                return;
+
+            }
+        }
+
+        throw new IllegalArgumentException("engine does not belong to this pool");
+
+    }
+
+    /**
+     * Convenience method to execute a script with a pooled engine.
+     * @param script script to execute
+     * @return result of script execution
+     * @throws ScriptException if an exception occurred during script processing
+     * @throws InterruptedException if interrupted while waiting for an engine
+     * @see Script#runWith(ScriptEngine)
+     */
+    public Object run(Script script) throws ScriptException, InterruptedException {
+        return run(script, ImmutableMap.<String, Object>of());
+    }
+
+    /**
+     * Convenience method to execute a script with a pooled engine and additional variables.
+     *
+     * The run gets a fresh engine scope, as with {@link Script#runIsolated(ScriptEngine, Map)},
+     * but the result of a {@linkplain Script#isCacheable() cacheable} script is still served from the cache.
+     *
+     * @param script script to execute
+     * @param variables variables to bind, keyed by name
+     * @return result of script execution
+     * @throws ScriptException if an exception occurred during script processing
+     * @throws InterruptedException if interrupted while waiting for an engine
+     * @see Script#runWith(ScriptEngine, Map)
+     */
+    public Object run(Script script, Map<String, ?> variables) throws ScriptException, InterruptedException {
+
+        ScriptEngine engine = borrow();
+        scripts.add(script);
+
+        try {
+            return script.run(engine, variables, true);
+        } finally {
+            release(engine);
+        }
+
+    }
+
+    /**
+     * Convenience method to invoke the entry function of a script with a pooled engine.
+     * @param script script to invoke
+     * @param args function arguments
+     * @return function result
+     * @throws ScriptException if an exception occurred during script processing
+     * @throws NoSuchMethodException if the script does not define its entry function
+     * @throws InterruptedException if interrupted while waiting for an engine
+     * @see Script#invoke(ScriptEngine, Object...)
+     */
+    public Object invoke(Script script, Object... args) throws ScriptException, NoSuchMethodException, InterruptedException {
+
+        ScriptEngine engine = borrow();
+        scripts.add(script);
+
+        try {
+            return script.invoke(engine, args);
+        } finally {
+            release(engine);
+        }
+
+    }
+
+    /**
+     * Returns the number of engines borrowed so far.
+     * @return borrow count
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * Returns the total time spent waiting for an engine, in nanoseconds.
+     * @return total wait time
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    /**
+     * Returns the longest time spent waiting for an engine, in nanoseconds.
+     * @return maximum wait time
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Returns the number of engines currently available without waiting.
+     * @return number of available engines
+     */
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Releases what the scripts run or invoked through the pool keep for its engines,
+     * see {@link Script#release(ScriptEngine)}. The pool should not be used afterwards.
+     */
+    @Override
+    public void close() {
+
+        for (Script script : scripts) {
+            for (int i = 0; i < engines.length(); i++) {
+                if (engines.get(i) != null) {
+                    script.release(engines.get(i));
+                }
+            }
+        }
+
+        scripts.clear();
+
+    }
+
+    // gives the slot and the permit back if the engine can not be created
+    private ScriptEngine take(int i) {
+
+        try {
+            return engine(i);
+        } catch (RuntimeException | Error ex) {
+            busy[i].set(false);
+            permits.release();
+            throw ex;
+        }
+
+    }
+
+    private ScriptEngine engine(int i) {
+
+        ScriptEngine engine = engines.get(i);
+
+        if (engine == null) {
+            engines.compareAndSet(i, null, factory.getScriptEngine());
+            engine = engines.get(i);
+        }
+
+        return engine;
+
+    }
+
+    private void record(long wait) {
+
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+
+        long max;
+        while (wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) {
+        }
+
+    }
+
+    private static ScriptEngineFactory getFactory(String name) {
+
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName(name);
+
+        if (engine == null) {
+            throw new IllegalArgumentException("no script engine found: " + name);
+        }
+
+        return engine.getFactory();
+
+    }
+
+}
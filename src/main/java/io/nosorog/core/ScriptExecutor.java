@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ScriptExecutor runs scripts asynchronously.
+ *
+ * <br><br>Injected values are resolved lazily on the thread running the script, and released once
+ * the run completes. The request and session contexts of the caller are not active there, so a script
+ * run asynchronously should only inject application scoped or {@code @Dependent} beans: the client
+ * proxy of a request or session scoped bean fails with
+ * {@link javax.enterprise.context.ContextNotActiveException} when used.
+ *
+ * <br><br>By default, every run gets a virtual thread where the runtime supports them,
+ * or a thread from an unbounded cached pool otherwise. Either way, the number of concurrent runs
+ * is effectively limited by the size of the {@link ScriptEnginePool}, and waiting for an engine
+ * does not block the caller.
+ *
+ * <br><br>Cancelling a future with interruption interrupts the run. A run waiting for an engine
+ * stops immediately, while a running script notices only at its next interruptible call.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * ScriptExecutor executor = new ScriptExecutor(pool);
+ * ListenableFuture&lt;Object&gt; res = executor.runAsync(script);
+ * </pre>
+ */
+public class ScriptExecutor implements Closeable {
+
+    private final ScriptEnginePool pool;
+    private final ListeningExecutorService executor;
+    private final boolean owned;
+
+    /**
+     * Construct a ScriptExecutor with the default executor.
+     * @param pool engines to run scripts with
+     */
+    public ScriptExecutor(ScriptEnginePool pool) {
+        this(pool, newDefaultExecutor(), true);
+    }
+
+    /**
+     * Construct a ScriptExecutor with a custom executor.
+     * @param pool engines to run scripts with
+     * @param executor executor to run scripts on, not shut down by {@link #close()}
+     */
+    public ScriptExecutor(ScriptEnginePool pool, ExecutorService executor) {
+        this(pool, executor, false);
+    }
+
+    private ScriptExecutor(ScriptEnginePool pool, ExecutorService executor, boolean owned) {
+        this.pool = pool;
+        this.executor = MoreExecutors.listeningDecorator(executor);
+        this.owned = owned;
+    }
+
+    /**
+     * Runs the script asynchronously.
+     * @param script script to execute
+     * @return future result of script execution
+     * @throws RejectedExecutionException if the executor does not accept the run
+     */
+    public ListenableFuture<Object> runAsync(Script script) {
+        return runAsync(script, ImmutableMap.<String, Object>of());
+    }
+
+    /**
+     * Runs the script asynchronously with additional variables.
+     * @param script script to execute
+     * @param variables variables to bind, keyed by name
+     * @return future result of script execution
+     * @throws RejectedExecutionException if the executor does not accept the run
+     * @see ScriptEnginePool#run(Script, Map)
+     */
+    public ListenableFuture<Object> runAsync(final Script script, final Map<String, ?> variables) {
+
+        return executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return pool.run(script, variables);
+            }
+        });
+
+    }
+
+    /**
+     * Shuts the default executor down. Runs in progress are allowed to complete.
+     */
+    @Override
+    public void close() {
+        if (owned) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            // no virtual threads before Java 21
+            return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("nosorog-async-%d").setDaemon(true).build());
+        }
+
+    }
+
+}
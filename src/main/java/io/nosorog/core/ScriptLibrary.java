@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.ClassPath;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.script.ScriptException;
+
+/**
+ * ScriptLibrary loads a set of scripts and indexes them by {@link Script#getName() name}.
+ *
+ * <br><br>Scripts are discovered in a directory tree or under a classpath prefix, and loaded in parallel.
+ * A script that fails to load does not abort the whole load, the failure is reported instead.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * ScriptLibrary library = new ScriptLibrary(new ScriptLoader());
+ * Map&lt;String, Exception&gt; failures = library.loadDirectory(Paths.get("/opt/scripts"));
+ * Script script = library.get("Foo");
+ * </pre>
+ */
+public class ScriptLibrary {
+
+    private static final String DEFAULT_GLOB = "*.js";
+
+    private final ScriptLoader loader;
+    private final int parallelism;
+    private final ConcurrentMap<String, Script> scripts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, Script> files = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Construct a ScriptLibrary loading scripts with the given {@link ScriptLoader}
+     * on as many threads as there are available processors.
+     * @param loader script loader
+     */
+    public ScriptLibrary(ScriptLoader loader) {
+        this(loader, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct a ScriptLibrary loading scripts with the given {@link ScriptLoader}.
+     * @param loader script loader
+     * @param parallelism number of threads used for loading
+     */
+    public ScriptLibrary(ScriptLoader loader, int parallelism) {
+        this.loader = loader;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Loads all <code>*.js</code> files from the directory tree.
+     * @param dir root directory
+     * @return load failures, keyed by file path
+     * @throws IOException if the directory tree can not be walked
+     * @see #loadDirectory(Path, String)
+     */
+    public Map<String, Exception> loadDirectory(Path dir) throws IOException {
+        return loadDirectory(dir, DEFAULT_GLOB);
+    }
+
+    /**
+     * Loads all files matching the glob pattern from the directory tree.
+     * @param dir root directory
+     * @param glob file name pattern, as understood by {@link java.nio.file.FileSystem#getPathMatcher(String)}
+     * @return load failures, keyed by file path
+     * @throws IOException if the directory tree can not be walked
+     */
+    public Map<String, Exception> loadDirectory(Path dir, String glob) throws IOException {
+
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final List<Task> tasks = new ArrayList<>();
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(file.getFileName())) {
+                    tasks.add(new Task(file.toString(), file) {
+                        @Override
+                        Script load() throws IOException, ScriptException {
+                            return loader.load(file);
+                        }
+                    });
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return load(tasks);
+
+    }
+
+    /**
+     * Loads all <code>*.js</code> resources under the classpath prefix.
+     * @param prefix resource name prefix, e.g. <code>scripts/</code>
+     * @return load failures, keyed by resource name
+     * @throws IOException if the classpath can not be scanned
+     */
+    public Map<String, Exception> loadClasspath(String prefix) throws IOException {
+
+        List<Task> tasks = new ArrayList<>();
+
+        for (final ClassPath.ResourceInfo resource : ClassPath.from(loader.getClassLoader()).getResources()) {
+            String name = resource.getResourceName();
+            if (name.startsWith(prefix) && name.endsWith(DEFAULT_GLOB.substring(1))) {
+                tasks.add(new Task(name, null) {
+                    @Override
+                    Script load() throws IOException, ScriptException {
+                        try (InputStream is = resource.url().openStream()) {
+                            return loader.load(is);
+                        }
+                    }
+                });
+            }
+        }
+
+        return load(tasks);
+
+    }
+
+    /**
+     * Reloads the script from the given file and atomically replaces the previous version.
+     *
+     * Runs in progress complete with the previous version, while its compiled code is evicted,
+     * so that it can be garbage collected afterwards. If the script can not be loaded,
+     * the previous version is kept.
+     *
+     * @param file script file
+     * @return reloaded script
+     * @throws IOException if IOException has occurred while reading from the file
+     * @throws ScriptException if the script can not be loaded, has no name, or its name is already taken
+     */
+    public synchronized Script reload(Path file) throws IOException, ScriptException {
+
+        Script script = loader.load(file);
+        String name = script.getName();
+
+        if (name == null) {
+            throw new ScriptException("script has no @Name", file.toString(), -1);
+        }
+
+        Script old = files.get(file);
+        Script taken = scripts.get(name);
+
+        if (taken != null && taken != old && taken != script) {
+            throw new ScriptException("duplicate script name: " + name, file.toString(), -1);
+        }
+
+        scripts.put(name, script);
+        files.put(file, script);
+
+        if (old != null && old != script) {
+            if (!name.equals(old.getName())) {
+                scripts.remove(old.getName(), old);
+            }
+            old.dispose();
+        }
+
+        version.incrementAndGet();
+
+        return script;
+
+    }
+
+    /**
+     * Removes the script loaded from the given file.
+     * @param file script file
+     * @return removed script, or null if no script was loaded from the file
+     */
+    public synchronized Script unload(Path file) {
+
+        Script old = files.remove(file);
+
+        if (old != null) {
+            scripts.remove(old.getName(), old);
+            old.dispose();
+            version.incrementAndGet();
+        }
+
+        return old;
+
+    }
+
+    /**
+     * Watches the directory tree and reloads scripts as the <code>*.js</code> files change.
+     * @param dir root directory
+     * @return watcher, which needs to be closed to stop watching
+     * @throws IOException if the directory tree can not be registered with the {@link java.nio.file.WatchService}
+     * @see ScriptWatcher
+     */
+    public ScriptWatcher watch(Path dir) throws IOException {
+        return new ScriptWatcher(this, dir, DEFAULT_GLOB, ScriptWatcher.DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Returns the script with the given name.
+     * @param name script name
+     * @return script, or null if there is no such script
+     */
+    public Script get(String name) {
+        return scripts.get(name);
+    }
+
+    /**
+     * Returns all loaded scripts.
+     * @return unmodifiable view of the loaded scripts
+     */
+    public Collection<Script> getScripts() {
+        return Collections.unmodifiableCollection(scripts.values());
+    }
+
+    // changes whenever scripts are loaded, reloaded or unloaded
+    long getVersion() {
+        return version.get();
+    }
+
+    private Map<String, Exception> load(List<Task> tasks) {
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        ImmutableMap.Builder<String, Exception> failures = ImmutableMap.builder();
+
+        for (Task task : tasks) {
+            if (task.failure != null) {
+                failures.put(task.location, task.failure);
+            }
+        }
+
+        return failures.build();
+
+    }
+
+    private abstract class Task implements Callable<Void> {
+
+        private final String location;
+        private final Path file;
+        private volatile Exception failure;
+
+        private Task(String location, Path file) {
+            this.location = location;
+            this.file = file;
+        }
+
+        abstract Script load() throws IOException, ScriptException;
+
+        @Override
+        public Void call() {
+
+            try {
+
+                Script script = load();
+                String name = script.getName();
+
+                if (name == null) {
+                    throw new ScriptException("script has no @Name", location, -1);
+                }
+
+                Script previous = scripts.putIfAbsent(name, script);
+
+                if (previous != null && previous != script) {
+                    throw new ScriptException("duplicate script name: " + name, location, -1);
+                }
+
+                if (file != null) {
+                    files.put(file, script);
+                }
+
+                version.incrementAndGet();
+
+            } catch (IOException | ScriptException | RuntimeException ex) {
+                failure = ex;
+            }
+
+            return null;
+
+        }
+
+    }
+
+}
@@ -16,30 +16,41 @@
 
 package io.nosorog.core;
 
+import io.nosorog.core.internal.HeaderScanner;
+import io.nosorog.core.internal.Metadata;
+import io.nosorog.core.internal.Precompiled;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseException;
 import com.github.javaparser.ast.Node;
-import java.io.BufferedReader;
+import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.script.ScriptException;
 import org.apache.commons.lang3.StringUtils;
 
 /**
- * ScriptLoader loads a script from an {@link InputStream}, extracts metadata and prepares script for execution.
+ * ScriptLoader loads a script from an {@link InputStream}, a file or a {@link ByteBuffer}, extracts metadata and prepares script for execution.
  */
 public class ScriptLoader {
 
     private static final Logger LOG = Logger.getLogger(ScriptLoader.class.getName());
+    private static final long MAP_THRESHOLD = 64 * 1024;
 
     private final ClassLoader classLoader;
+    private final ScriptCache cache;
+    private final MetadataCache metadata;
+    private final LoadMetrics metrics;
 
     /**
      * Construct a ScriptLoader with default {@link ClassLoader}.
@@ -53,7 +64,52 @@ public class ScriptLoader {
      * @param classLoader custom {@link ClassLoader}
      */
     public ScriptLoader(ClassLoader classLoader) {
+        this(classLoader, null);
+    }
+
+    /**
+     * Construct a ScriptLoader with custom {@link ClassLoader} and {@link ScriptCache}.
+     *
+     * Scripts with the same content are built once and then served from the cache.
+     *
+     * @param classLoader custom {@link ClassLoader}
+     * @param cache script cache, or null to disable caching
+     */
+    public ScriptLoader(ClassLoader classLoader, ScriptCache cache) {
+        this(classLoader, cache, null);
+    }
+
+    /**
+     * Construct a ScriptLoader with custom {@link ClassLoader}, {@link ScriptCache} and {@link MetadataCache}.
+     *
+     * Metadata of scripts loaded previously, possibly by another JVM, is taken from the metadata cache.
+     *
+     * @param classLoader custom {@link ClassLoader}
+     * @param cache script cache, or null to disable caching
+     * @param metadata metadata cache, or null to disable metadata caching
+     */
+    public ScriptLoader(ClassLoader classLoader, ScriptCache cache, MetadataCache metadata) {
+        this(classLoader, cache, metadata, null);
+    }
+
+    /**
+     * Construct a ScriptLoader with custom {@link ClassLoader}, {@link ScriptCache}, {@link MetadataCache}
+     * and {@link LoadMetrics}.
+     *
+     * @param classLoader custom {@link ClassLoader}
+     * @param cache script cache, or null to disable caching
+     * @param metadata metadata cache, or null to disable metadata caching
+     * @param metrics receiver of loading phase timings, or null to discard them
+     */
+    public ScriptLoader(ClassLoader classLoader, ScriptCache cache, MetadataCache metadata, LoadMetrics metrics) {
         this.classLoader = classLoader == null ? Thread.currentThread().getContextClassLoader() : classLoader;
+        this.cache = cache;
+        this.metadata = metadata;
+        this.metrics = metrics == null ? LoadMetrics.NOOP : metrics;
+    }
+
+    ClassLoader getClassLoader() {
+        return classLoader;
     }
 
     /**
@@ -65,58 +121,213 @@ public class ScriptLoader {
      */
     public Script load(InputStream is) throws IOException, ScriptException {
 
-        StringWriter body = new StringWriter();
-        PrintWriter pw = new PrintWriter(body);
+        try (InputStream in = is) {
+            return load(ByteBuffer.wrap(ByteStreams.toByteArray(in)));
+        }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"))) {
+    }
 
-            String line;
-            boolean flag = false;
-            Collection<Node> nodes = new ArrayList<>();
+    /**
+     * Load a {@link Script} from a file.
+     *
+     * Large files are memory-mapped rather than read into the heap.
+     *
+     * @param path file to read from
+     * @return script object
+     * @throws IOException if IOException has occurred while reading from the file
+     * @throws ScriptException if an error occurred while processing imports or injections
+     */
+    public Script load(Path path) throws IOException, ScriptException {
 
-            while ((line = reader.readLine()) != null) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
 
-                pw.println(line);
+            long size = channel.size();
 
-                if (StringUtils.strip(line).equals("/**")) {
-                    flag = true;
-                    continue;
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
                 }
+                buffer.flip();
+                return load(buffer);
+            }
 
-                if (StringUtils.strip(line).equals("*/")) {
-                    flag = false;
-                    continue;
-                }
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
 
-                if (flag) {
-                    try {
-                        Node node = parseHeader(line);
-                        if (node != null) {
-                            nodes.add(node);
-                        }
-                    } catch (ParseException ex) {
-                        LOG.log(Level.SEVERE, null, ex);
-                    }
-                }
+        }
+
+    }
+
+    /**
+     * Load a {@link Script} from {@link ByteBuffer} containing UTF-8 encoded script text.
+     *
+     * The buffer is decoded exactly once, header is scanned directly from the decoded characters.
+     * Line terminators of the script body are replaced with the platform line separator.
+     * Buffer position and limit are not modified.
+     *
+     * @param buffer buffer to read from
+     * @return script object
+     * @throws IOException if IOException has occurred while loading a cached script
+     * @throws ScriptException if an error occurred while processing imports or injections
+     */
+    public Script load(final ByteBuffer buffer) throws IOException, ScriptException {
+
+        if (cache == null) {
+            return build(buffer);
+        }
+
+        return cache.get(classLoader, buffer, new Callable<Script>() {
+            @Override
+            public Script call() throws ScriptException {
+                return build(buffer);
+            }
+        });
+
+    }
+
+    private Script build(ByteBuffer buffer) throws ScriptException {
+
+        CharSequence text = StandardCharsets.UTF_8.decode(buffer.duplicate());
+        Metadata precompiled = Precompiled.get(classLoader, buffer);
+
+        if (precompiled != null) {
+            return build(text, precompiled.getHeader(), precompiled, false);
+        }
+
+        String key = metadata != null ? metadata.key(classLoader, buffer) : null;
+
+        // no metadata cache, or the classpath cannot be fingerprinted
+        if (key == null) {
+            return build(text, scan(text), null, false);
+        }
 
+        Metadata cached = metadata.get(key);
+
+        if (cached != null) {
+            return build(text, cached.getHeader(), cached, false);
+        }
+
+        List<String> header = scan(text);
+        Script script = build(text, header, null, metadata.isStoringStubs());
+        metadata.put(key, script.getMetadata(header));
+
+        return script;
+
+    }
+
+    /**
+     * Extracts script metadata without performing injection, i.e. without requiring a CDI container.
+     */
+    Metadata precompile(ByteBuffer buffer) throws ScriptException {
+
+        CharSequence text = StandardCharsets.UTF_8.decode(buffer.duplicate());
+        List<String> header = scan(text);
+
+        return Script.builder(parse(header), getBody(text), classLoader, metrics, true).prepare(null).getMetadata(header);
+
+    }
+
+    private List<String> scan(CharSequence text) {
+
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try {
+
+            HeaderScanner scanner = new HeaderScanner(text);
+            List<String> header = new ArrayList<>();
+
+            String line;
+
+            while ((line = scanner.next()) != null) {
+                header.add(line);
             }
 
-            return Script.builder(nodes, body.getBuffer().toString(), classLoader).build();
+            failed = false;
+
+            return header;
 
+        } finally {
+            metrics.record(LoadMetrics.Phase.SCAN, System.nanoTime() - start, failed);
         }
 
     }
 
+    private Script build(CharSequence text, List<String> header, Metadata cached, boolean keepBytecode) throws ScriptException {
+        return Script.builder(parse(header), getBody(text), classLoader, metrics, keepBytecode).build(cached);
+    }
+
+    // the same text as copying the lines through PrintWriter.println, which is what scripts were always given
+    static String getBody(CharSequence text) {
+
+        String separator = System.lineSeparator();
+        StringBuilder body = new StringBuilder(text.length() + separator.length());
+        int pos = 0;
+
+        while (pos < text.length()) {
+
+            int start = pos;
+
+            while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') {
+                pos++;
+            }
+
+            body.append(text, start, pos).append(separator);
+
+            if (pos < text.length() && text.charAt(pos++) == '\r' && pos < text.length() && text.charAt(pos) == '\n') {
+                pos++;
+            }
+
+        }
+
+        return body.toString();
+
+    }
+
+    private Collection<Node> parse(List<String> header) {
+
+        long start = System.nanoTime();
+        boolean failed = false;
+
+        Collection<Node> nodes = new ArrayList<>();
+
+        try {
+            for (String line : header) {
+                try {
+                    Node node = parseHeader(line);
+                    if (node != null) {
+                        nodes.add(node);
+                    }
+                } catch (ParseException ex) {
+                    LOG.log(Level.SEVERE, null, ex);
+                    failed = true;
+                }
+            }
+        } catch (RuntimeException ex) {
+            failed = true;
+            throw ex;
+        } finally {
+            metrics.record(LoadMetrics.Phase.PARSE, System.nanoTime() - start, failed);
+        }
+
+        return nodes;
+
+    }
+
     private Node parseHeader(String line) throws ParseException {
 
         String l = StringUtils.stripStart(line, " *");
 
+        // simple lines are turned into nodes directly, JavaParser is only invoked for the rest
+
         if (l.startsWith("import")) {
-            return JavaParser.parseImport(l + ";");
-        } else if (StringUtils.startsWithAny(l, "@Name", "@Description", "@Startup", "@Schedule")) {
-            return JavaParser.parseAnnotation(l);
+            Node node = HeaderScanner.parseImport(l);
+            return node != null ? node : JavaParser.parseImport(l + ";");
+        } else if (StringUtils.startsWithAny(l, "@Name", "@Description", "@Startup", "@Schedule", "@Entry", "@Cacheable")) {
+            Node node = HeaderScanner.parseAnnotation(l);
+            return node != null ? node : JavaParser.parseAnnotation(l);
         } else if (l.startsWith("@")) {
-            return JavaParser.parseBodyDeclaration(l + ";");
+            Node node = HeaderScanner.parseField(l);
+            return node != null ? node : JavaParser.parseBodyDeclaration(l + ";");
         }
 
         return null;
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Durations;
+import io.nosorog.core.internal.TimingWheel;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.ScriptException;
+
+/**
+ * ScriptScheduler runs the <code>@Startup</code> and <code>@Schedule</code> scripts of a {@link ScriptLibrary}.
+ *
+ * <br><br>Startup scripts are run once, in parallel waves that honor their dependencies,
+ * e.g. <code>@Startup(dependsOn = {"Foo", "Bar"})</code>. A script is not run if any of its dependencies failed.
+ *
+ * <br><br>Scheduled scripts, e.g. <code>@Schedule("30s")</code>, are fired by a single timing wheel thread
+ * onto a bounded pool of workers. Supported units are <code>ms</code>, <code>s</code>, <code>m</code>,
+ * <code>h</code> and <code>d</code>. A run is skipped, rather than queued, if the previous run of the same script
+ * has not completed yet, or if all workers are busy and the queue is full. Scripts are looked up by name on every run,
+ * so reloaded versions are picked up. The library is rescanned every second after {@link #start()}, so that scheduled
+ * scripts added later, e.g. by {@link ScriptWatcher}, are scheduled, scripts reloaded with a different period
+ * are rescheduled, and scripts unloaded or reloaded without <code>@Schedule</code> are no longer fired.
+ *
+ * <br><br>Usage:
+ * <pre>
+ * ScriptScheduler scheduler = new ScriptScheduler(library, pool, 4, 16);
+ * Map&lt;String, Exception&gt; failures = scheduler.start();
+ * ...
+ * scheduler.close();
+ * </pre>
+ */
+public class ScriptScheduler implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ScriptScheduler.class.getName());
+
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static final long RESCAN_MILLIS = 1000;
+
+    private final ScriptLibrary library;
+    private final ScriptEnginePool pool;
+    private final int workers;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private TimingWheel wheel;
+
+    /**
+     * Construct a ScriptScheduler.
+     * @param library scripts to run
+     * @param pool engines to run the scripts with
+     * @param workers number of worker threads
+     * @param queueCapacity number of runs that may wait for a worker
+     */
+    public ScriptScheduler(ScriptLibrary library, ScriptEnginePool pool, int workers, int queueCapacity) {
+
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers should be positive");
+        }
+
+        this.library = library;
+        this.pool = pool;
+        this.workers = workers;
+
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                new ThreadFactoryBuilder().setNameFormat("nosorog-scheduler-%d").setDaemon(true).build());
+
+    }
+
+    /**
+     * Runs startup scripts and schedules scheduled ones.
+     *
+     * Returns as soon as all startup scripts have completed.
+     *
+     * @return startup failures and invalid schedules, keyed by script name
+     */
+    public synchronized Map<String, Exception> start() {
+
+        if (wheel != null) {
+            throw new IllegalStateException("already started");
+        }
+
+        Map<String, Exception> failures = new LinkedHashMap<>(runStartup());
+        wheel = new TimingWheel("nosorog-timer", TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+
+        failures.putAll(scheduleAll());
+
+        // pick up scripts loaded later
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, Exception> failure : scheduleAll().entrySet()) {
+                    LOG.log(Level.WARNING, "Cannot schedule script " + failure.getKey(), failure.getValue());
+                }
+            }
+        }, RESCAN_MILLIS, RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+
+        return Collections.unmodifiableMap(failures);
+
+    }
+
+    /**
+     * Returns scheduled jobs along with their statistics.
+     * @return scheduled jobs
+     */
+    public Collection<Job> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    /**
+     * Stops firing scheduled scripts. Runs in progress are allowed to complete.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (wheel != null) {
+            wheel.close();
+        }
+
+        executor.shutdown();
+
+    }
+
+    // called by start() and then by the wheel thread only, so jobs are never updated concurrently
+    private Map<String, Exception> scheduleAll() {
+
+        Map<String, Exception> failures = new LinkedHashMap<>();
+
+        for (Iterator<Job> it = jobs.values().iterator(); it.hasNext();) {
+
+            Job job = it.next();
+            Script script = library.get(job.name);
+
+            if (script == null || script.getSchedule() == null) {
+                job.cancel();
+                it.remove();
+            }
+
+        }
+
+        for (Script script : library.getScripts()) {
+
+            String schedule = script.getSchedule();
+
+            if (schedule == null) {
+                continue;
+            }
+
+            Job job = jobs.get(script.getName());
+
+            try {
+
+                long period = Durations.parse(schedule);
+
+                if (job == null) {
+                    job = new Job(script.getName());
+                    job.schedule(period);
+                    jobs.put(job.name, job);
+                } else if (period != job.period) {
+                    job.schedule(period);
+                }
+
+            } catch (IllegalArgumentException ex) {
+                failures.put(script.getName(), ex);
+            }
+
+        }
+
+        return failures;
+
+    }
+
+    private Map<String, Exception> runStartup() {
+
+        Map<String, Script> pending = new HashMap<>();
+
+        for (Script script : library.getScripts()) {
+            if (script.isStartup()) {
+                pending.put(script.getName(), script);
+            }
+        }
+
+        Map<String, Exception> failures = new LinkedHashMap<>();
+
+        if (pending.isEmpty()) {
+            return failures;
+        }
+
+        ForkJoinPool startup = new ForkJoinPool(workers);
+
+        try {
+
+            while (!pending.isEmpty()) {
+
+                int remaining = pending.size();
+                List<Startup> wave = new ArrayList<>();
+
+                for (Script script : pending.values()) {
+
+                    boolean ready = true;
+
+                    for (String dependency : script.getDependsOn()) {
+                        if (failures.containsKey(dependency)) {
+                            failures.put(script.getName(), new ScriptException("dependency failed: " + dependency));
+                            ready = false;
+                            break;
+                        } else if (pending.containsKey(dependency)) {
+                            ready = false;
+                        } else if (library.get(dependency) == null || !library.get(dependency).isStartup()) {
+                            failures.put(script.getName(), new ScriptException("unknown dependency: " + dependency));
+                            ready = false;
+                            break;
+                        }
+                    }
+
+                    if (ready) {
+                        wave.add(new Startup(script));
+                    }
+
+                }
+
+                pending.keySet().removeAll(failures.keySet());
+
+                if (wave.isEmpty()) {
+
+                    // scripts visited before a failed dependency are still waiting for it
+                    if (pending.size() < remaining) {
+                        continue;
+                    }
+
+                    // nothing is ready and nothing has failed, so the rest depend on each other
+                    for (String name : pending.keySet()) {
+                        failures.put(name, new ScriptException("circular dependency"));
+                    }
+                    break;
+                }
+
+                startup.invokeAll(wave);
+
+                for (Startup task : wave) {
+                    pending.remove(task.script.getName());
+                    if (task.failure != null) {
+                        failures.put(task.script.getName(), task.failure);
+                    }
+                }
+
+            }
+
+        } finally {
+            startup.shutdown();
+        }
+
+        return failures;
+
+    }
+
+    private class Startup implements Callable<Void> {
+
+        private final Script script;
+        private volatile Exception failure;
+
+        private Startup(Script script) {
+            this.script = script;
+        }
+
+        @Override
+        public Void call() {
+
+            try {
+                pool.run(script);
+            } catch (ScriptException | RuntimeException ex) {
+                failure = ex;
+            } catch (InterruptedException ex) {
+                failure = ex;
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+
+        }
+
+    }
+
+    /**
+     * Job represents a scheduled script.
+     */
+    public class Job {
+
+        private final String name;
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private volatile long period;
+        private TimingWheel.Timer timer;
+
+        private final AtomicLong runCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong skipCount = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Job(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns script name.
+         * @return script name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the period the script is fired with, in nanoseconds.
+         * @return period
+         */
+        public long getPeriodNanos() {
+            return period;
+        }
+
+        /**
+         * Returns the number of completed runs, including failed ones.
+         * @return run count
+         */
+        public long getRunCount() {
+            return runCount.get();
+        }
+
+        /**
+         * Returns the number of failed runs.
+         * @return failure count
+         */
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        /**
+         * Returns the number of runs skipped because the previous run was still in progress,
+         * or because the workers were saturated.
+         * @return skip count
+         */
+        public long getSkipCount() {
+            return skipCount.get();
+        }
+
+        /**
+         * Returns the total run time, in nanoseconds.
+         * @return total run time
+         */
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        /**
+         * Returns the longest run time, in nanoseconds.
+         * @return maximum run time
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        private void run() {
+
+            try {
+
+                Script script = library.get(name);
+
+                // unloaded, or no longer scheduled, and not cancelled yet
+                if (script == null || script.getSchedule() == null) {
+                    skipCount.incrementAndGet();
+                    return;
+                }
+
+                long start = System.nanoTime();
+
+                try {
+                    pool.run(script);
+                } catch (ScriptException | RuntimeException ex) {
+                    failureCount.incrementAndGet();
+                    LOG.log(Level.WARNING, "Scheduled script " + name + " failed", ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                record(System.nanoTime() - start);
+
+            } finally {
+                running.set(false);
+            }
+
+        }
+
+        private void schedule(long period) {
+
+            if (period <= 0) {
+                throw new IllegalArgumentException("schedule period should be positive");
+            }
+
+            cancel();
+
+            this.period = period;
+            this.timer = wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    fire();
+                }
+            }, period, period, TimeUnit.NANOSECONDS);
+
+        }
+
+        private void cancel() {
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+        }
+
+        private void fire() {
+
+            if (!running.compareAndSet(false, true)) {
+                skipCount.incrementAndGet();
+                return;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Job.this.run();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                running.set(false);
+                skipCount.incrementAndGet();
+            }
+
+        }
+
+        private void record(long time) {
+
+            runCount.incrementAndGet();
+            totalNanos.addAndGet(time);
+
+            long max;
+            while (time > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, time)) {
+            }
+
+        }
+
+    }
+
+}
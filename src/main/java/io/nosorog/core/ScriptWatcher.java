@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.ScriptException;
+
+/**
+ * ScriptWatcher keeps a {@link ScriptLibrary} in sync with a directory tree.
+ *
+ * <br><br>Changes are collected until the tree has been quiet for the debounce period,
+ * so a burst of writes to a file results in a single reload. Only changed files are reloaded,
+ * see {@link ScriptLibrary#reload(Path)} and {@link ScriptLibrary#unload(Path)}.
+ * Failures are logged, and the previous version of a script stays in effect.
+ */
+public class ScriptWatcher implements Closeable {
+
+    static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private static final Logger LOG = Logger.getLogger(ScriptWatcher.class.getName());
+
+    private final ScriptLibrary library;
+    private final PathMatcher matcher;
+    private final long debounce;
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private final Thread thread;
+
+    ScriptWatcher(ScriptLibrary library, Path dir, String glob, long debounce) throws IOException {
+
+        this.library = library;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.debounce = debounce;
+
+        watcher = dir.getFileSystem().newWatchService();
+        register(dir, false);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "nosorog-watcher-" + dir.getFileName());
+
+        thread.setDaemon(true);
+        thread.start();
+
+    }
+
+    /**
+     * Stops watching.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    private void watch() {
+
+        try {
+
+            while (!Thread.currentThread().isInterrupted()) {
+
+                WatchKey key = pending.isEmpty() ? watcher.take() : watcher.poll(debounce, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    flush();
+                    continue;
+                }
+
+                Path dir = keys.get(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan(dir);
+                        continue;
+                    }
+
+                    Path file = dir.resolve((Path) event.context());
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                        rescan(file);
+                    } else if (matcher.matches(file.getFileName())) {
+                        pending.add(file);
+                    }
+
+                }
+
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+
+            }
+
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // closed
+        }
+
+    }
+
+    private void flush() {
+
+        for (Path file : pending) {
+            try {
+                if (Files.exists(file)) {
+                    library.reload(file);
+                } else {
+                    library.unload(file);
+                }
+            } catch (IOException | ScriptException | RuntimeException ex) {
+                LOG.log(Level.WARNING, "Unable to reload " + file, ex);
+            }
+        }
+
+        pending.clear();
+
+    }
+
+    // a failure only affects the directory at hand, e.g. one deleted right after it has been created
+    private void rescan(Path dir) {
+        try {
+            register(dir, true);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to watch " + dir, ex);
+        }
+    }
+
+    private void register(Path dir, final boolean scan) throws IOException {
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                keys.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // files that appeared before the directory was registered
+                if (scan && attrs.isRegularFile() && matcher.matches(file.getFileName())) {
+                    pending.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+                // the initial registration fails as a whole, while a rescan skips what is gone
+                if (!scan) {
+                    throw ex;
+                }
+                LOG.log(Level.FINE, "Unable to visit " + file, ex);
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+
+    }
+
+}
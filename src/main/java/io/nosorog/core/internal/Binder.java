@@ -16,22 +16,54 @@
 
 package io.nosorog.core.internal;
 
-import javax.enterprise.inject.spi.Unmanaged;
-import javax.script.Bindings;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.Set;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.AnnotatedField;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.CDI;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.inject.Inject;
 
 public class Binder {
 
-    public static Bindings getBindings(Class clazz) throws InstantiationException, IllegalAccessException {
+    private final BeanManager beanManager;
+    private final Map<String, InjectionPoint> injectionPoints;
 
-        Stub stub = (Stub) new Unmanaged(clazz)
-                .newInstance()
-                .produce()
-                .inject()
-                .postConstruct()
-                .get();
+    public Binder(Class<?> clazz) {
 
-        return stub.getBindings();
+        beanManager = CDI.current().getBeanManager();
 
+        ImmutableMap.Builder<String, InjectionPoint> builder = ImmutableMap.builder();
+
+        for (AnnotatedField<?> field : beanManager.createAnnotatedType(clazz).getFields()) {
+            if (field.isAnnotationPresent(Inject.class)) {
+                InjectionPoint injectionPoint = beanManager.createInjectionPoint(field);
+                beanManager.validate(injectionPoint);
+                builder.put(field.getJavaMember().getName(), injectionPoint);
+            }
+        }
+
+        injectionPoints = builder.build();
+
+    }
+
+    public LazyBindings getBindings(Function<String, Object> fallback) {
+        return new LazyBindings(this, fallback);
+    }
+
+    Set<String> getNames() {
+        return injectionPoints.keySet();
+    }
+
+    CreationalContext<?> createCreationalContext() {
+        return beanManager.createCreationalContext(null);
+    }
+
+    Object resolve(String name, CreationalContext<?> context) {
+        return beanManager.getInjectableReference(injectionPoints.get(name), context);
     }
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.util.Iterator;
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+
+public class ClassPools {
+
+    // LoaderClassPath only keeps a weak reference to the ClassLoader, so the pool does not pin it
+    private static final LoadingCache<ClassLoader, ClassPool> POOLS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, ClassPool>() {
+                @Override
+                public ClassPool load(ClassLoader classLoader) {
+
+                    ClassPool pool = new ClassPool(true);
+
+                    pool.appendClassPath(new LoaderClassPath(classLoader));
+
+                    pool.importPackage("javax.script");
+                    pool.importPackage("javax.inject");
+                    pool.importPackage("javax.enterprise.inject");
+                    pool.importPackage("javax.annotation");
+                    pool.importPackage("javax.persistence");
+                    pool.importPackage("javax.ejb.EJB");
+                    pool.importPackage("javax.xml.ws.WebServiceRef");
+
+                    return pool;
+
+                }
+            });
+
+    private ClassPools() {
+    }
+
+    public static ClassPool newChild(ClassLoader classLoader) {
+
+        ClassPool parent = POOLS.getUnchecked(classLoader);
+        ClassPool pool = new ClassPool(parent);
+
+        for (Iterator<?> it = parent.getImportedPackages(); it.hasNext();) {
+            pool.importPackage((String) it.next());
+        }
+
+        return pool;
+
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Durations {
+
+    private static final Pattern DURATION = Pattern.compile("\\s*(\\d+)\\s*(ms|s|m|h|d)\\s*");
+
+    private Durations() {
+    }
+
+    /*
+     * Parses durations such as 500ms, 30s, 5m, 1h or 1d into nanoseconds.
+     */
+    public static long parse(String duration) {
+
+        Matcher matcher = DURATION.matcher(duration);
+
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("invalid duration: " + duration);
+        }
+
+        long value = Long.parseLong(matcher.group(1));
+
+        switch (matcher.group(2)) {
+            case "ms":
+                return TimeUnit.MILLISECONDS.toNanos(value);
+            case "s":
+                return TimeUnit.SECONDS.toNanos(value);
+            case "m":
+                return TimeUnit.MINUTES.toNanos(value);
+            case "h":
+                return TimeUnit.HOURS.toNanos(value);
+            default:
+                return TimeUnit.DAYS.toNanos(value);
+        }
+
+    }
+
+}
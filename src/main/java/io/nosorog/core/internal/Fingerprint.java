@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class Fingerprint {
+
+    private static final Logger LOG = Logger.getLogger(Fingerprint.class.getName());
+
+    private static final LoadingCache<ClassLoader, Optional<HashCode>> FINGERPRINTS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, Optional<HashCode>>() {
+                @Override
+                public Optional<HashCode> load(ClassLoader classLoader) {
+                    return isSupported(classLoader) ? Optional.of(compute(classLoader)) : Optional.<HashCode>absent();
+                }
+            });
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Returns a hash of the classpath visible to the ClassLoader, covering the location, size and
+     * modification time of every entry. Only file metadata is read, entries are not opened.
+     * Returns null if the classpath cannot be determined, i.e. if some ClassLoader in the chain
+     * is neither a URLClassLoader nor the system ClassLoader or one of its ancestors.
+     */
+    public static HashCode of(ClassLoader classLoader) {
+        return FINGERPRINTS.getUnchecked(classLoader).orNull();
+    }
+
+    private static boolean isSupported(ClassLoader classLoader) {
+
+        Set<ClassLoader> system = Sets.newIdentityHashSet();
+
+        for (ClassLoader loader = ClassLoader.getSystemClassLoader(); loader != null; loader = loader.getParent()) {
+            system.add(loader);
+        }
+
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (!(loader instanceof URLClassLoader) && !system.contains(loader)) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+    private static HashCode compute(ClassLoader classLoader) {
+
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        hasher.putString(System.getProperty("java.version"), StandardCharsets.UTF_8);
+
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    hasher.putString(url.toString(), StandardCharsets.UTF_8);
+                    if ("file".equals(url.getProtocol())) {
+                        try {
+                            putEntry(hasher, Paths.get(url.toURI()));
+                        } catch (URISyntaxException | IllegalArgumentException ex) {
+                            LOG.log(Level.FINE, null, ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (String entry : Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(System.getProperty("java.class.path", ""))) {
+            hasher.putString(entry, StandardCharsets.UTF_8);
+            putEntry(hasher, Paths.get(entry));
+        }
+
+        return hasher.hash();
+
+    }
+
+    private static void putEntry(final Hasher hasher, Path path) {
+
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    hasher.putString(file.toString(), StandardCharsets.UTF_8);
+                    hasher.putLong(attrs.size());
+                    hasher.putLong(attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.github.javaparser.ASTHelper;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.body.VariableDeclaratorId;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.MarkerAnnotationExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.ReferenceType;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single pass scanner for the Nosorog header, i.e. the first <code>/** ... *&#47;</code> block of a script.
+ *
+ * The static parse methods build the same nodes JavaParser would for the simple header lines,
+ * and return null for anything else, so that the caller can fall back to JavaParser.
+ */
+public class HeaderScanner {
+
+    private static final Set<String> KEYWORDS = ImmutableSet.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
+            "true", "false", "null"
+    );
+
+    private final CharSequence text;
+    private int pos;
+    private boolean header;
+    private boolean done;
+
+    public HeaderScanner(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Returns the next line of the header, or null if the header has ended.
+     */
+    public String next() {
+
+        while (!done && pos < text.length()) {
+
+            int start = pos;
+            int end = start;
+
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+
+            pos = end;
+
+            if (pos < text.length() && text.charAt(pos++) == '\r' && pos < text.length() && text.charAt(pos) == '\n') {
+                pos++;
+            }
+
+            if (!header) {
+                header = isMarker(start, end, "/**");
+            } else if (isMarker(start, end, "*/")) {
+                done = true;
+            } else {
+                return text.subSequence(start, end).toString();
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private boolean isMarker(int start, int end, String marker) {
+
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        if (end - start != marker.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < marker.length(); i++) {
+            if (text.charAt(start + i) != marker.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+    public static ImportDeclaration parseImport(String line) {
+
+        Cursor c = new Cursor(line);
+
+        if (!c.keyword("import")) {
+            return null;
+        }
+
+        boolean isStatic = c.keyword("static");
+        String name = c.qualifiedName();
+
+        if (name == null) {
+            return null;
+        }
+
+        boolean isAsterisk = c.accept(".*");
+
+        if (!c.end()) {
+            return null;
+        }
+
+        return new ImportDeclaration(ASTHelper.createNameExpr(name), isStatic, isAsterisk);
+
+    }
+
+    public static SingleMemberAnnotationExpr parseAnnotation(String line) {
+
+        Cursor c = new Cursor(line);
+
+        if (!c.accept("@")) {
+            return null;
+        }
+
+        String name = c.identifier();
+
+        if (name == null) {
+            return null;
+        }
+
+        c.skipWhitespace();
+
+        if (!c.accept("(")) {
+            return null;
+        }
+
+        c.skipWhitespace();
+        String value = c.stringLiteral();
+        c.skipWhitespace();
+
+        if (value == null || !c.accept(")") || !c.end()) {
+            return null;
+        }
+
+        return new SingleMemberAnnotationExpr(new NameExpr(name), new StringLiteralExpr(value));
+
+    }
+
+    public static FieldDeclaration parseField(String line) {
+
+        Cursor c = new Cursor(line);
+        List<AnnotationExpr> annotations = new ArrayList<>();
+
+        while (c.accept("@")) {
+
+            String name = c.identifier();
+
+            if (name == null || !c.whitespace()) {
+                return null;
+            }
+
+            annotations.add(new MarkerAnnotationExpr(new NameExpr(name)));
+
+        }
+
+        String type = c.identifier();
+
+        if (annotations.isEmpty() || type == null || !c.whitespace()) {
+            return null;
+        }
+
+        String name = c.identifier();
+
+        if (name == null || !c.end()) {
+            return null;
+        }
+
+        return new FieldDeclaration(
+                0,
+                annotations,
+                new ReferenceType(new ClassOrInterfaceType(type)),
+                Collections.singletonList(new VariableDeclarator(new VariableDeclaratorId(name)))
+        );
+
+    }
+
+    private static class Cursor {
+
+        private final String line;
+        private int pos;
+
+        private Cursor(String line) {
+            this.line = line;
+        }
+
+        private boolean accept(String s) {
+
+            if (line.startsWith(s, pos)) {
+                pos += s.length();
+                return true;
+            }
+
+            return false;
+
+        }
+
+        private boolean keyword(String keyword) {
+
+            int mark = pos;
+
+            if (accept(keyword) && whitespace()) {
+                return true;
+            }
+
+            pos = mark;
+
+            return false;
+
+        }
+
+        private boolean whitespace() {
+            int mark = pos;
+            skipWhitespace();
+            return pos > mark;
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private String identifier() {
+
+            int start = pos;
+
+            if (pos < line.length() && Character.isJavaIdentifierStart(line.charAt(pos))) {
+                pos++;
+                while (pos < line.length() && Character.isJavaIdentifierPart(line.charAt(pos))) {
+                    pos++;
+                }
+            }
+
+            String identifier = line.substring(start, pos);
+
+            return identifier.isEmpty() || KEYWORDS.contains(identifier) ? null : identifier;
+
+        }
+
+        private String qualifiedName() {
+
+            int start = pos;
+
+            if (identifier() == null) {
+                return null;
+            }
+
+            while (pos + 1 < line.length() && line.charAt(pos) == '.' && line.charAt(pos + 1) != '*') {
+                pos++;
+                if (identifier() == null) {
+                    return null;
+                }
+            }
+
+            return line.substring(start, pos);
+
+        }
+
+        private String stringLiteral() {
+
+            if (!accept("\"")) {
+                return null;
+            }
+
+            int start = pos;
+
+            while (pos < line.length() && line.charAt(pos) != '"') {
+                if (line.charAt(pos) == '\\') {
+                    return null;
+                }
+                pos++;
+            }
+
+            return accept("\"") ? line.substring(start, pos - 1) : null;
+
+        }
+
+        private boolean end() {
+            skipWhitespace();
+            return pos == line.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class ImportCache {
+
+    static final int MAX_LOOKUPS = 10000;
+
+    // Same rules as PackageIndex: weak identity keys, values hold strings only, never Class objects.
+    private static final LoadingCache<ClassLoader, ImportCache> CACHES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, ImportCache>() {
+                @Override
+                public ImportCache load(ClassLoader classLoader) {
+                    return new ImportCache();
+                }
+            });
+
+    private final ConcurrentMap<String, String> classes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> statics = new ConcurrentHashMap<>();
+    // class lookups by name, bounded since most of them fail and names are script-controlled
+    private final Cache<String, Boolean> exists = CacheBuilder.newBuilder()
+            .maximumSize(MAX_LOOKUPS)
+            .build();
+
+    private ImportCache() {
+    }
+
+    public static void invalidate(ClassLoader classLoader) {
+        CACHES.invalidate(classLoader);
+    }
+
+    public static String importClass(ClassLoader classLoader, String name) throws ClassNotFoundException {
+
+        ImportCache cache = CACHES.getUnchecked(classLoader);
+        String line = cache.classes.get(name);
+
+        if (line == null) {
+            Class<?> clazz = Class.forName(name, false, classLoader);
+            line = String.format("var %s = Java.type('%s');%n", clazz.getSimpleName(), name);
+            cache.classes.putIfAbsent(name, line);
+        }
+
+        return line;
+
+    }
+
+    public static Set<String> getStaticMethods(ClassLoader classLoader, String name) throws ClassNotFoundException {
+
+        ImportCache cache = CACHES.getUnchecked(classLoader);
+        Set<String> methods = cache.statics.get(name);
+
+        if (methods == null) {
+
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+
+            for (Method method : Class.forName(name, false, classLoader).getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    builder.add(method.getName());
+                }
+            }
+
+            methods = builder.build();
+            cache.statics.putIfAbsent(name, methods);
+
+        }
+
+        return methods;
+
+    }
+
+    public static String findClass(ClassLoader classLoader, List<String> packages, String simpleName) {
+
+        ImportCache cache = CACHES.getUnchecked(classLoader);
+
+        for (String pkg : packages) {
+
+            String name = pkg + '.' + simpleName;
+            Boolean found = cache.exists.getIfPresent(name);
+
+            if (found == null) {
+                found = exists(classLoader, name);
+                cache.exists.put(name, found);
+            }
+
+            if (found) {
+                return name;
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private static boolean exists(ClassLoader classLoader, String name) {
+
+        try {
+            Class.forName(name, false, classLoader);
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            // e.g. NoClassDefFoundError on case-insensitive file systems
+            return false;
+        }
+
+    }
+
+}
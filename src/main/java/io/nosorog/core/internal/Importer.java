@@ -18,30 +18,25 @@ package io.nosorog.core.internal;
 
 import com.github.javaparser.ast.ImportDeclaration;
 import com.github.javaparser.ast.expr.QualifiedNameExpr;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.reflect.ClassPath;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javassist.Modifier;
 
 public class Importer {
 
     private static final Logger LOG = Logger.getLogger(Importer.class.getName());
 
     private final StringBuilder prelude = new StringBuilder();
-    private final ClassPath classpath;
+    private final ClassLoader classLoader;
     private final Collection<ImportDeclaration> nodes;
 
-    public Importer(Collection<ImportDeclaration> nodes, ClassLoader classLoader) throws IOException {
-        classpath = ClassPath.from(classLoader);
+    public Importer(Collection<ImportDeclaration> nodes, ClassLoader classLoader) {
+        this.classLoader = classLoader;
         this.nodes = nodes;
     }
 
+    // wildcard imports are resolved lazily, see PackageResolver
     public String getPrelude() {
 
         for (ImportDeclaration node : nodes) {
@@ -54,9 +49,7 @@ public class Importer {
                         QualifiedNameExpr fqn = (QualifiedNameExpr) node.getChildrenNodes().get(0);
                         importMethod(fqn.getQualifier().toString(), fqn.getName());
                     }
-                } else if (node.isAsterisk()) {
-                    importPackage(node.getName().toString());
-                } else {
+                } else if (!node.isAsterisk()) {
                     importClass(node.getName().toString());
                 }
             } catch (ClassNotFoundException | NoSuchMethodException ex) {
@@ -69,35 +62,40 @@ public class Importer {
 
     }
 
-    private void importClass(String name) throws ClassNotFoundException {
+    // eager expansion of wildcard imports, for those who evaluate the prelude by themselves
+    public String getPackagePrelude() throws IOException {
+
+        for (ImportDeclaration node : nodes) {
+
+            try {
+                if (!node.isStatic() && node.isAsterisk()) {
+                    importPackage(node.getName().toString());
+                }
+            } catch (ClassNotFoundException ex) {
+                LOG.log(Level.WARNING, null, ex);
+            }
+
+        }
 
-        Class<?> clazz = Class.forName(name);
-        prelude.append(String.format("var %s = Java.type('%s');%n", clazz.getSimpleName(), name));
+        return prelude.toString();
 
     }
 
-    private void importPackage(String name) throws ClassNotFoundException {
+    private void importClass(String name) throws ClassNotFoundException {
+        prelude.append(ImportCache.importClass(classLoader, name));
+    }
 
-        ImmutableSet<ClassPath.ClassInfo> classes = classpath.getTopLevelClasses(name);
+    private void importPackage(String name) throws ClassNotFoundException, IOException {
 
-        for (ClassPath.ClassInfo clazz : classes) {
-            importClass(clazz.getName());
+        for (String clazz : PackageIndex.of(classLoader).getTopLevelClasses(name)) {
+            importClass(clazz);
         }
 
     }
 
     private void importStatic(String name) throws ClassNotFoundException {
 
-        Class<?> clazz = Class.forName(name);
-        Set<String> methods = new HashSet<>();
-
-        for (Method method : clazz.getMethods()) {
-            if (Modifier.isStatic(method.getModifiers())) {
-                methods.add(method.getName());
-            }
-        }
-
-        for (String method : methods) {
+        for (String method : ImportCache.getStaticMethods(classLoader, name)) {
             prelude.append(String.format("var %s = Java.type('%s').%s;%n", method, name, method));
         }
 
@@ -105,18 +103,7 @@ public class Importer {
 
     private void importMethod(String className, String methodName) throws ClassNotFoundException, NoSuchMethodException {
 
-        Class<?> clazz = Class.forName(className);
-
-        boolean found = false;
-
-        for (Method method : clazz.getMethods()) {
-            if (method.getName().equals(methodName) && Modifier.isStatic(method.getModifiers())) {
-                found = true;
-                break;
-            }
-        }
-
-        if (found) {
+        if (ImportCache.getStaticMethods(classLoader, className).contains(methodName)) {
             prelude.append(String.format("var %s = Java.type('%s').%s;%n", methodName, className, methodName));
         } else {
             throw new NoSuchMethodException(className + "." + methodName);
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.base.Function;
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.script.Bindings;
+
+public class LazyBindings extends AbstractMap<String, Object> implements Bindings, Closeable {
+
+    private final Binder binder;
+    private final Function<String, Object> fallback;
+
+    // allocated on first write or resolution only
+    private Map<String, Object> values;
+    private Set<String> removed;
+    private CreationalContext<?> context;
+    private boolean materialized;
+
+    LazyBindings(Binder binder, Function<String, Object> fallback) {
+        this.binder = binder;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Object get(Object key) {
+
+        checkKey(key);
+
+        if (isPending(key)) {
+            return resolve((String) key);
+        }
+
+        if (values != null && values.containsKey(key)) {
+            return values.get(key);
+        }
+
+        return fallback(key);
+
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        checkKey(key);
+        return isPending(key) || (values != null && values.containsKey(key)) || fallback(key) != null;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        checkKey(name);
+        return getValues().put(name, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+
+        checkKey(key);
+
+        boolean pending = isPending(key);
+
+        // injected names stay removed, even if already resolved
+        if (binder.getNames().contains(key)) {
+            if (removed == null) {
+                removed = new HashSet<>();
+            }
+            removed.add((String) key);
+        }
+
+        return pending || values == null ? null : values.remove(key);
+
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+
+        if (!materialized) {
+            for (String name : binder.getNames()) {
+                if (isPending(name)) {
+                    resolve(name);
+                }
+            }
+            materialized = true;
+        }
+
+        return getValues().entrySet();
+
+    }
+
+    @Override
+    public void close() {
+        if (context != null) {
+            context.release();
+            context = null;
+        }
+    }
+
+    private boolean isPending(Object key) {
+        return !materialized
+                && binder.getNames().contains(key)
+                && (values == null || !values.containsKey(key))
+                && (removed == null || !removed.contains(key));
+    }
+
+    private Object fallback(Object key) {
+
+        if (fallback == null || (removed != null && removed.contains(key))) {
+            return null;
+        }
+
+        return fallback.apply((String) key);
+
+    }
+
+    private Object resolve(String name) {
+
+        if (context == null) {
+            context = binder.createCreationalContext();
+        }
+
+        Object value = binder.resolve(name, context);
+        getValues().put(name, value);
+
+        return value;
+
+    }
+
+    private Map<String, Object> getValues() {
+
+        if (values == null) {
+            values = new HashMap<>();
+        }
+
+        return values;
+
+    }
+
+    private static void checkKey(Object key) {
+
+        if (key == null) {
+            throw new NullPointerException("key can not be null");
+        }
+
+        if (!(key instanceof String)) {
+            throw new ClassCastException("key should be a String");
+        }
+
+        if (((String) key).isEmpty()) {
+            throw new IllegalArgumentException("key can not be empty");
+        }
+
+    }
+
+}
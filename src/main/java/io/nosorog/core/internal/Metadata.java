@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import com.google.common.collect.ImmutableList;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class Metadata {
+
+    private static final int VERSION = 2;
+
+    private final List<String> header;
+    private final String prelude;
+    private final String stubSignature;
+    private final String stubName;
+    private final byte[] stub;
+
+    public Metadata(List<String> header, String prelude, String stubSignature, String stubName, byte[] stub) {
+        this.header = ImmutableList.copyOf(header);
+        this.prelude = prelude;
+        this.stubSignature = stubSignature;
+        this.stubName = stubName;
+        this.stub = stub;
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    public String getPrelude() {
+        return prelude;
+    }
+
+    public String getStubSignature() {
+        return stubSignature;
+    }
+
+    public String getStubName() {
+        return stubName;
+    }
+
+    public byte[] getStub() {
+        return stub;
+    }
+
+    public Metadata withoutStub() {
+        return new Metadata(header, prelude, null, null, null);
+    }
+
+    public Metadata withoutBytecode() {
+        return new Metadata(header, prelude, stubSignature, stubName, null);
+    }
+
+    public Metadata withBytecode(byte[] stub) {
+        return new Metadata(header, prelude, stubSignature, stubName, stub);
+    }
+
+    public static Metadata read(InputStream is) throws IOException {
+
+        DataInputStream in = new DataInputStream(is);
+
+        if (in.readInt() != VERSION) {
+            return null;
+        }
+
+        int count = in.readInt();
+        ImmutableList.Builder<String> header = ImmutableList.builder();
+
+        for (int i = 0; i < count; i++) {
+            header.add(in.readUTF());
+        }
+
+        String prelude = new String(readBytes(in), StandardCharsets.UTF_8);
+
+        if (!in.readBoolean()) {
+            return new Metadata(header.build(), prelude, null, null, null);
+        }
+
+        String stubSignature = in.readUTF();
+        String stubName = in.readUTF();
+        byte[] stub = in.readBoolean() ? readBytes(in) : null;
+
+        return new Metadata(header.build(), prelude, stubSignature, stubName, stub);
+
+    }
+
+    public void write(OutputStream os) throws IOException {
+
+        DataOutputStream out = new DataOutputStream(os);
+
+        out.writeInt(VERSION);
+        out.writeInt(header.size());
+
+        for (String line : header) {
+            out.writeUTF(line);
+        }
+
+        writeBytes(out, prelude.getBytes(StandardCharsets.UTF_8));
+        out.writeBoolean(stubSignature != null);
+
+        if (stubSignature != null) {
+            out.writeUTF(stubSignature);
+            out.writeUTF(stubName);
+            out.writeBoolean(stub != null);
+            if (stub != null) {
+                writeBytes(out, stub);
+            }
+        }
+
+        out.flush();
+
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.reflect.ClassPath;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+public class PackageIndex {
+
+    // Weak keys compare by identity and let the index go away together with the ClassLoader.
+    // Values must never reference the ClassLoader (ClassPath.ClassInfo does), hence plain class names.
+    private static final LoadingCache<ClassLoader, PackageIndex> INDEXES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, PackageIndex>() {
+                @Override
+                public PackageIndex load(ClassLoader classLoader) throws IOException {
+                    return new PackageIndex(classLoader);
+                }
+            });
+
+    private final ImmutableSetMultimap<String, String> classes;
+
+    private PackageIndex(ClassLoader classLoader) throws IOException {
+
+        ImmutableSetMultimap.Builder<String, String> builder = ImmutableSetMultimap.builder();
+
+        for (ClassPath.ClassInfo clazz : ClassPath.from(classLoader).getTopLevelClasses()) {
+            builder.put(clazz.getPackageName(), clazz.getName());
+        }
+
+        classes = builder.build();
+
+    }
+
+    public static PackageIndex of(ClassLoader classLoader) throws IOException {
+
+        try {
+            return INDEXES.get(classLoader);
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+            throw Throwables.propagate(ex.getCause());
+        }
+
+    }
+
+    public static void invalidate(ClassLoader classLoader) {
+        INDEXES.invalidate(classLoader);
+    }
+
+    public Set<String> getTopLevelClasses(String packageName) {
+        return classes.get(packageName);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+public class PackageResolver implements Function<String, Object> {
+
+    private static final Logger LOG = Logger.getLogger(PackageResolver.class.getName());
+
+    private final ScriptEngine engine;
+    private final ScriptContext context;
+    private final ClassLoader classLoader;
+    private final List<String> packages;
+
+    // type handles by simple name, absent if no imported package has such a class;
+    // bounded, since every undeclared global a script touches ends up here
+    private final Cache<String, Optional<Object>> types = CacheBuilder.newBuilder()
+            .maximumSize(ImportCache.MAX_LOOKUPS)
+            .build();
+
+    public PackageResolver(ScriptEngine engine, ScriptContext context, ClassLoader classLoader, List<String> packages) {
+        this.engine = engine;
+        this.context = context;
+        this.classLoader = classLoader;
+        this.packages = packages;
+    }
+
+    @Override
+    public Object apply(String name) {
+
+        Optional<Object> type = types.getIfPresent(name);
+
+        if (type == null) {
+            type = Optional.fromNullable(resolve(name));
+            types.put(name, type);
+        }
+
+        return type.orNull();
+
+    }
+
+    private Object resolve(String name) {
+
+        if (!isIdentifier(name)) {
+            return null;
+        }
+
+        String className = ImportCache.findClass(classLoader, packages, name);
+
+        if (className == null) {
+            return null;
+        }
+
+        try {
+            synchronized (context) {
+                return engine.eval(String.format("Java.type('%s')", className), context);
+            }
+        } catch (ScriptException ex) {
+            LOG.log(Level.WARNING, null, ex);
+            return null;
+        }
+
+    }
+
+    private static boolean isIdentifier(String name) {
+
+        if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+public interface PhaseStatsMXBean {
+
+    long getCount();
+
+    long getFailureCount();
+
+    long getTotalNanos();
+
+    long getMaxNanos();
+
+    double getMeanMillis();
+
+    // upper bounds of histogram buckets, in microseconds, the last bucket is unbounded
+    long[] getHistogramBounds();
+
+    long[] getHistogram();
+
+}
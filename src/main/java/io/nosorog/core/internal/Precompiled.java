@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class Precompiled {
+
+    public static final String LOCATION = "META-INF/nosorog/";
+    public static final String INDEX = LOCATION + "index";
+    public static final String SUFFIX = ".meta";
+
+    private static final Logger LOG = Logger.getLogger(Precompiled.class.getName());
+
+    // hashes of all precompiled scripts visible to the ClassLoader, merged from every index resource
+    private static final LoadingCache<ClassLoader, Set<String>> INDEXES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, Set<String>>() {
+                @Override
+                public Set<String> load(ClassLoader classLoader) {
+
+                    ImmutableSet.Builder<String> hashes = ImmutableSet.builder();
+
+                    try {
+                        for (Enumeration<URL> e = classLoader.getResources(INDEX); e.hasMoreElements();) {
+                            hashes.addAll(Resources.readLines(e.nextElement(), StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException ex) {
+                        LOG.log(Level.WARNING, "Unable to read precompiled script index", ex);
+                    }
+
+                    return hashes.build();
+
+                }
+            });
+
+    private Precompiled() {
+    }
+
+    public static Metadata get(ClassLoader classLoader, ByteBuffer bytes) {
+
+        Set<String> index = INDEXES.getUnchecked(classLoader);
+
+        if (index.isEmpty()) {
+            return null;
+        }
+
+        String hash = Digests.sha256(bytes).toString();
+
+        if (!index.contains(hash)) {
+            return null;
+        }
+
+        try (InputStream is = classLoader.getResourceAsStream(LOCATION + hash + SUFFIX)) {
+
+            Metadata metadata = is == null ? null : Metadata.read(is);
+
+            if (metadata == null || metadata.getStubName() == null) {
+                return metadata;
+            }
+
+            try (InputStream cs = classLoader.getResourceAsStream(getClassResource(metadata.getStubName()))) {
+                return cs == null ? metadata.withoutStub() : metadata.withBytecode(ByteStreams.toByteArray(cs));
+            }
+
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Ignoring unreadable precompiled script " + hash, ex);
+        }
+
+        return null;
+
+    }
+
+    public static String getClassResource(String className) {
+        return LOCATION + className.replace('.', '/') + ".class";
+    }
+
+}
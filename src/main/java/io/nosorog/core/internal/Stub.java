@@ -16,10 +16,5 @@
 
 package io.nosorog.core.internal;
 
-import javax.script.Bindings;
-
 public interface Stub {
-
-    Bindings getBindings();
-
 }
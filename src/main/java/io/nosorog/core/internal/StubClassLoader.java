@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+public class StubClassLoader extends ClassLoader {
+
+    private static final String STUB = "io.nosorog.core.internal.Stub";
+
+    // Every stub class gets a loader of its own and is only weakly referenced here, so that
+    // the class and its loader are unloaded as soon as no script uses them any more.
+    private static final LoadingCache<ClassLoader, Cache<String, Class<?>>> STUBS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ClassLoader, Cache<String, Class<?>>>() {
+                @Override
+                public Cache<String, Class<?>> load(ClassLoader parent) {
+                    return CacheBuilder.newBuilder().weakValues().build();
+                }
+            });
+
+    // only kept if the stub is to be persisted
+    private volatile byte[] bytecode;
+
+    private StubClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    public static Class<?> getStub(ClassLoader parent, String signature) {
+        return STUBS.getUnchecked(parent).getIfPresent(signature);
+    }
+
+    public static byte[] getBytecode(Class<?> stub) {
+        return ((StubClassLoader) stub.getClassLoader()).bytecode;
+    }
+
+    // derived from the signature, so that equal stubs have equal names in every JVM
+    public static String getName(String signature) {
+        return String.format("%s$%s", STUB, Hashing.sha256().hashString(signature, StandardCharsets.UTF_8).toString().substring(0, 16));
+    }
+
+    public static Class<?> define(final ClassLoader parent, String signature, final String name, final byte[] bytecode, boolean keepBytecode) {
+
+        Class<?> stub;
+
+        try {
+            stub = STUBS.getUnchecked(parent).get(signature, new Callable<Class<?>>() {
+                @Override
+                public Class<?> call() {
+                    return new StubClassLoader(parent).defineClass(name, bytecode, 0, bytecode.length);
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw new UncheckedExecutionException(ex.getCause());
+        }
+
+        // the stub may have been defined earlier without keeping its bytecode
+        if (keepBytecode) {
+            ((StubClassLoader) stub.getClassLoader()).bytecode = bytecode;
+        }
+
+        return stub;
+
+    }
+
+}
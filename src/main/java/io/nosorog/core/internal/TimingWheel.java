@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core.internal;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Hashed timing wheel driven by a single thread. Tasks run on that thread, so they must only hand work off.
+ */
+public class TimingWheel implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(TimingWheel.class.getName());
+
+    private final long tick;
+    private final List<List<Timer>> buckets;
+    private final Queue<Timer> pending = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long start = System.nanoTime();
+
+    // accessed by the wheel thread only
+    private long ticks;
+
+    public TimingWheel(String name, long tick, TimeUnit unit, int size) {
+
+        this.tick = unit.toNanos(tick);
+        this.buckets = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<Timer>());
+        }
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                turn();
+            }
+        }, name);
+
+        thread.setDaemon(true);
+        thread.start();
+
+    }
+
+    public Timer schedule(Runnable task, long delay, long period, TimeUnit unit) {
+
+        Timer timer = new Timer(task, toTicks(unit.toNanos(delay)), period > 0 ? toTicks(unit.toNanos(period)) : 0);
+        pending.add(timer);
+
+        return timer;
+
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private long toTicks(long nanos) {
+        return Math.max(1, (nanos + tick - 1) / tick);
+    }
+
+    private void turn() {
+
+        try {
+
+            while (!Thread.currentThread().isInterrupted()) {
+
+                long sleep = start + (ticks + 1) * tick - System.nanoTime();
+
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+
+                ticks++;
+
+                for (Timer timer; (timer = pending.poll()) != null;) {
+                    timer.deadline += ticks;
+                    add(timer);
+                }
+
+                expire(buckets.get((int) (ticks % buckets.size())));
+
+            }
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    private void expire(List<Timer> bucket) {
+
+        List<Timer> rescheduled = null;
+
+        for (Iterator<Timer> it = bucket.iterator(); it.hasNext();) {
+
+            Timer timer = it.next();
+
+            if (timer.cancelled) {
+                it.remove();
+                continue;
+            }
+
+            // timers further than one revolution away stay in the bucket
+            if (timer.deadline > ticks) {
+                continue;
+            }
+
+            it.remove();
+
+            try {
+                timer.task.run();
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, null, ex);
+            }
+
+            if (timer.period > 0 && !timer.cancelled) {
+                timer.deadline = ticks + timer.period;
+                if (rescheduled == null) {
+                    rescheduled = new ArrayList<>();
+                }
+                rescheduled.add(timer);
+            }
+
+        }
+
+        if (rescheduled != null) {
+            for (Timer timer : rescheduled) {
+                add(timer);
+            }
+        }
+
+    }
+
+    private void add(Timer timer) {
+        buckets.get((int) (timer.deadline % buckets.size())).add(timer);
+    }
+
+    public static class Timer {
+
+        private final Runnable task;
+        private final long period;
+        private long deadline;
+        private volatile boolean cancelled;
+
+        private Timer(Runnable task, long delay, long period) {
+            this.task = task;
+            this.deadline = delay;
+            this.period = period;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+    }
+
+}
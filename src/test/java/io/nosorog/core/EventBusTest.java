@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+public class EventBusTest {
+
+    // observers record "name:event" here
+    public static final List<String> DELIVERED = new CopyOnWriteArrayList<>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScriptLibrary library = new ScriptLibrary(new ScriptLoader(EventBusTest.class.getClassLoader()));
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private ScriptEnginePool pool;
+
+    // runs every task on a thread of its own, so that the test can interrupt it
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            thread.start();
+        }
+    };
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+        assumeNotNull(new ScriptEngineManager().getEngineByName("nashorn"));
+    }
+
+    @Before
+    public void setUp() {
+        DELIVERED.clear();
+        pool = new ScriptEnginePool("nashorn", 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testFire() throws Exception {
+
+        write("a.js", observer("A", "String"));
+        write("b.js", observer("B", "CharSequence"));
+        write("c.js", observer("C", "Integer"));
+        assertEquals(0, library.loadDirectory(folder.getRoot().toPath()).size());
+
+        EventBus bus = new EventBus(pool);
+        assertEquals(0, bus.registerAll(library).size());
+
+        // subtypes are delivered as well
+        bus.fire("foo");
+        assertEquals(ImmutableList.of("A:foo", "B:foo"), sorted());
+
+        bus.fire(new Object());
+        assertEquals(2, DELIVERED.size());
+
+        bus.unregisterAll(library);
+        bus.fire("bar");
+        assertEquals(2, DELIVERED.size());
+
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        write("a.js", script("@Name(\"A\")", "@Observes String event", "throw 'boom';"));
+        write("b.js", script("@Name(\"B\")", "@Observes Foo event", "1;"));
+        library.loadDirectory(folder.getRoot().toPath());
+
+        EventBus bus = new EventBus(pool);
+
+        // B observes a type that can not be resolved
+        assertEquals(ImmutableList.of("B"), ImmutableList.copyOf(bus.registerAll(library).keySet()));
+
+        try {
+            bus.fire("foo");
+            fail("observer failure not propagated");
+        } catch (ScriptException ex) {
+            // expected
+        }
+
+        assertEquals(1, pool.getAvailable());
+
+    }
+
+    @Test
+    public void testReload() throws Exception {
+
+        Path a = write("a.js", observer("A", "String"));
+        Path b = write("b.js", observer("B", "String"));
+        library.loadDirectory(folder.getRoot().toPath());
+
+        EventBus bus = new EventBus(pool);
+        bus.registerAll(library);
+
+        // a new version observing another type, and a script unloaded
+        library.reload(write("a.js", observer("A", "Integer", "A2")));
+        library.unload(b);
+        library.reload(write("c.js", observer("C", "String")));
+
+        bus.fire("foo");
+        bus.fire(1);
+        assertEquals(ImmutableList.of("A2:1", "C:foo"), sorted());
+
+        library.unload(a);
+        bus.fire(2);
+        assertEquals(2, DELIVERED.size());
+
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+
+        Script script = new ScriptLoader(EventBusTest.class.getClassLoader()).load(write("a.js", observer("A", "String")));
+
+        EventBus bus = new EventBus(pool);
+        bus.register(script);
+        bus.fire("foo");
+
+        bus.unregister(script);
+        bus.fire("bar");
+
+        assertEquals(ImmutableList.of("A:foo"), ImmutableList.copyOf(DELIVERED));
+
+    }
+
+    @Test
+    public void testFireAsync() throws Exception {
+
+        write("a.js", observer("A", "Integer"));
+        library.loadDirectory(folder.getRoot().toPath());
+
+        EventBus bus = new EventBus(pool, executor, 4);
+        bus.registerAll(library);
+
+        ImmutableList.Builder<String> expected = ImmutableList.builder();
+
+        for (int i = 0; i < 10; i++) {
+            bus.fireAsync(i);
+            expected.add("A:" + i);
+        }
+
+        await(10);
+
+        // delivered in order, in batches
+        assertEquals(expected.build(), ImmutableList.copyOf(DELIVERED));
+
+    }
+
+    @Test
+    public void testFireAsyncInterrupted() throws Exception {
+
+        write("a.js", observer("A", "Integer"));
+        library.loadDirectory(folder.getRoot().toPath());
+
+        EventBus bus = new EventBus(pool, executor, 4);
+        bus.registerAll(library);
+
+        // the only engine is taken, so the drain task waits for it
+        ScriptEngine engine = pool.borrow();
+
+        try {
+
+            bus.fireAsync(1);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (threads.get(0).getState() != Thread.State.WAITING) {
+                assertTrue("not waiting in time", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+
+            threads.get(0).interrupt();
+            threads.get(0).join(TimeUnit.SECONDS.toMillis(10));
+
+        } finally {
+            pool.release(engine);
+        }
+
+        // the event stayed queued, and is delivered by the next drain task
+        await(1);
+        assertEquals(ImmutableList.of("A:1"), ImmutableList.copyOf(DELIVERED));
+        assertTrue(threads.size() > 1);
+
+    }
+
+    private void await(int count) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (DELIVERED.size() < count) {
+            assertTrue("not delivered in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+
+    }
+
+    private static List<String> sorted() {
+        return Ordering.natural().immutableSortedCopy(DELIVERED);
+    }
+
+    private Path write(String file, String text) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(file), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String observer(String name, String type) {
+        return observer(name, type, name);
+    }
+
+    private static String observer(String name, String type, String label) {
+        return script(
+                String.format("@Name(\"%s\")", name),
+                String.format("@Observes %s event", type),
+                String.format("Java.type('%s').DELIVERED.add('%s:' + event);", EventBusTest.class.getName(), label));
+    }
+
+}
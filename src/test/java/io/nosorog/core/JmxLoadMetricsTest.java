@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JmxLoadMetricsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void testRegister() throws Exception {
+
+        ObjectName parse = name("test", LoadMetrics.Phase.PARSE);
+
+        try (JmxLoadMetrics metrics = new JmxLoadMetrics("test")) {
+
+            for (LoadMetrics.Phase phase : LoadMetrics.Phase.values()) {
+                assertTrue(server.isRegistered(name("test", phase)));
+            }
+
+            metrics.record(LoadMetrics.Phase.PARSE, 1000, false);
+            metrics.record(LoadMetrics.Phase.PARSE, 3000, true);
+
+            assertEquals(2L, server.getAttribute(parse, "Count"));
+            assertEquals(1L, server.getAttribute(parse, "FailureCount"));
+            assertEquals(3000L, server.getAttribute(parse, "MaxNanos"));
+            assertEquals(0L, server.getAttribute(name("test", LoadMetrics.Phase.SCAN), "Count"));
+
+        }
+
+        for (LoadMetrics.Phase phase : LoadMetrics.Phase.values()) {
+            assertFalse(server.isRegistered(name("test", phase)));
+        }
+
+    }
+
+    @Test
+    public void testNameTaken() throws Exception {
+
+        try (JmxLoadMetrics metrics = new JmxLoadMetrics("taken")) {
+
+            try {
+                new JmxLoadMetrics("taken");
+                fail("name registered twice");
+            } catch (InstanceAlreadyExistsException ex) {
+                // expected
+            }
+
+            // the MXBeans of the first instance are left alone
+            for (LoadMetrics.Phase phase : LoadMetrics.Phase.values()) {
+                assertTrue(server.isRegistered(name("taken", phase)));
+            }
+
+            metrics.record(LoadMetrics.Phase.BIND, 1000, false);
+            assertEquals(1L, server.getAttribute(name("taken", LoadMetrics.Phase.BIND), "Count"));
+
+        }
+
+    }
+
+    private static ObjectName name(String name, LoadMetrics.Phase phase) throws Exception {
+        return new ObjectName("io.nosorog:type=LoadMetrics,name=" + ObjectName.quote(name) + ",phase=" + phase);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataCacheTest {
+
+    private static final String SCRIPT = script("@Name(\"Foo\")", "import java.util.List", "@Inject List list", "list;");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MetadataCache cache;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new MetadataCache(folder.getRoot().toPath(), true);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        Script first = load(MetadataCacheTest.class.getClassLoader());
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, entries().size());
+
+        Script second = load(MetadataCacheTest.class.getClassLoader());
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals("Foo", second.getName());
+        assertEquals(first.getPrelude(), second.getPrelude());
+        assertEquals(first.getBody(), second.getBody());
+
+    }
+
+    @Test
+    public void testCorruptEntry() throws Exception {
+
+        load(MetadataCacheTest.class.getClassLoader());
+
+        try (OutputStream os = Files.newOutputStream(entries().get(0))) {
+            // a current version, followed by a truncated header
+            new DataOutputStream(os).writeInt(2);
+        }
+
+        assertEquals("Foo", load(MetadataCacheTest.class.getClassLoader()).getName());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // the entry has been written again
+        load(MetadataCacheTest.class.getClassLoader());
+        assertEquals(1, cache.getHitCount());
+
+    }
+
+    @Test
+    public void testOldVersion() throws Exception {
+
+        load(MetadataCacheTest.class.getClassLoader());
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(entries().get(0)))) {
+            out.writeInt(1);
+            out.writeInt(0);
+        }
+
+        load(MetadataCacheTest.class.getClassLoader());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+    }
+
+    @Test
+    public void testUnsupportedClassLoader() throws Exception {
+
+        // the classpath of an arbitrary ClassLoader can not be fingerprinted
+        load(new ClassLoader(MetadataCacheTest.class.getClassLoader()) {
+        });
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertTrue(entries().isEmpty());
+
+    }
+
+    private Script load(ClassLoader classLoader) throws Exception {
+        return new ScriptLoader(classLoader, null, cache).load(new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<Path> entries() throws Exception {
+
+        List<Path> entries = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath(), "*.meta")) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+
+        return entries;
+
+    }
+
+}
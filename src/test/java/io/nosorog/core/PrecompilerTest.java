@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import io.nosorog.core.internal.Digests;
+import io.nosorog.core.internal.Precompiled;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class PrecompilerTest {
+
+    private static final String SCRIPT = script("@Name(\"Foo\")", "import java.util.List", "@Inject List list", "list;");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path source;
+    private Path output;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        source = folder.newFolder("src").toPath();
+        output = folder.newFolder("classes").toPath();
+    }
+
+    @Test
+    public void testPrecompile() throws Exception {
+
+        Path file = write(source.resolve("foo.js"), SCRIPT);
+        write(Files.createDirectories(source.resolve("sub")).resolve("bar.js"), script("@Name(\"Bar\")", "1;"));
+
+        assertTrue(precompile().isEmpty());
+        assertEquals(2, Files.readAllLines(output.resolve(Precompiled.INDEX), StandardCharsets.UTF_8).size());
+
+        final Set<LoadMetrics.Phase> phases = Collections.synchronizedSet(EnumSet.noneOf(LoadMetrics.Phase.class));
+
+        LoadMetrics metrics = new LoadMetrics() {
+            @Override
+            public void record(Phase phase, long nanos, boolean failed) {
+                phases.add(phase);
+            }
+        };
+
+        ClassLoader classLoader = new URLClassLoader(new URL[] {output.toUri().toURL()}, PrecompilerTest.class.getClassLoader());
+        Script script = new ScriptLoader(classLoader, null, null, metrics).load(file);
+
+        assertEquals("Foo", script.getName());
+
+        // precompiled metadata has been used, so the header has not been extracted again
+        assertFalse(phases.contains(LoadMetrics.Phase.SCAN));
+
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("nashorn");
+        assumeNotNull(engine);
+
+        assertEquals("list", script.runWith(engine));
+
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+
+        Path invalid = write(source.resolve("invalid.js"), script("@Name(\"Invalid\")", "@Schedule(\"soon\")", "1;"));
+        Path unwritable = write(source.resolve("unwritable.js"), SCRIPT);
+        write(source.resolve("valid.js"), script("@Name(\"Valid\")", "1;"));
+
+        // metadata of the second script can not be written, as a directory is in the way
+        String hash = Digests.sha256(ByteBuffer.wrap(Files.readAllBytes(unwritable))).toString();
+        Files.createDirectories(output.resolve(Precompiled.LOCATION + hash + Precompiled.SUFFIX));
+
+        Map<Path, Exception> failures = precompile();
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(invalid) instanceof ScriptException);
+        assertTrue(failures.get(unwritable) instanceof IOException);
+
+        // the rest has been precompiled all the same
+        assertEquals(1, Files.readAllLines(output.resolve(Precompiled.INDEX), StandardCharsets.UTF_8).size());
+
+    }
+
+    private Map<Path, Exception> precompile() throws IOException {
+        return new Precompiler(PrecompilerTest.class.getClassLoader()).precompile(source, output);
+    }
+
+    private static Path write(Path file, String text) throws IOException {
+        return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
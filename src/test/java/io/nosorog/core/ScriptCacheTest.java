@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ScriptCacheTest {
+
+    private final ClassLoader first = new ClassLoader(ScriptCacheTest.class.getClassLoader()) {
+    };
+
+    private final ClassLoader second = new ClassLoader(ScriptCacheTest.class.getClassLoader()) {
+    };
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Test
+    public void testHit() throws Exception {
+
+        ScriptCache cache = new ScriptCache(10);
+        ScriptLoader loader = new ScriptLoader(first, cache);
+
+        Script script = load(loader, "Foo");
+
+        // another loader sharing the cache and the ClassLoader
+        assertSame(script, load(new ScriptLoader(first, cache), "Foo"));
+        assertNotSame(script, load(loader, "Bar"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        ScriptCache cache = new ScriptCache(2);
+        ScriptLoader loader = new ScriptLoader(first, cache);
+
+        Script foo = load(loader, "Foo");
+        load(loader, "Bar");
+        load(loader, "Baz");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // the least recently used script has been evicted
+        assertNotSame(foo, load(loader, "Foo"));
+        assertEquals(4, cache.getMissCount());
+
+    }
+
+    @Test
+    public void testClassLoaders() throws Exception {
+
+        ScriptCache cache = new ScriptCache(1);
+        ScriptLoader loader = new ScriptLoader(first, cache);
+        ScriptLoader other = new ScriptLoader(second, cache);
+
+        // the same text is a different script with another ClassLoader, and the limit applies to each
+        Script script = load(loader, "Foo");
+        assertNotSame(script, load(other, "Foo"));
+        assertSame(script, load(loader, "Foo"));
+
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        ScriptCache cache = new ScriptCache(10);
+        ScriptLoader loader = new ScriptLoader(first, cache);
+        ScriptLoader other = new ScriptLoader(second, cache);
+
+        Script script = load(loader, "Foo");
+        Script kept = load(other, "Foo");
+
+        cache.invalidate(first);
+
+        assertEquals(1, cache.size());
+        assertNotSame(script, load(loader, "Foo"));
+        assertSame(kept, load(other, "Foo"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+
+    }
+
+    private static Script load(ScriptLoader loader, String name) throws Exception {
+        String text = script(String.format("@Name(\"%s\")", name), "1;");
+        return loader.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
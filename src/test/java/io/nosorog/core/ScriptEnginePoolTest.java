@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+public class ScriptEnginePoolTest {
+
+    private ScriptEnginePool pool;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+        assumeNotNull(new ScriptEngineManager().getEngineByName("nashorn"));
+    }
+
+    @Before
+    public void setUp() {
+        pool = new ScriptEnginePool("nashorn", 1);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+
+        ScriptEngine engine = pool.borrow();
+        engine.put("foo", "bar");
+        pool.release(engine);
+
+        assertEquals(1, pool.getAvailable());
+
+        ScriptEngine again = pool.borrow();
+        assertSame(engine, again);
+        assertNull(again.getBindings(ScriptContext.ENGINE_SCOPE).get("foo"));
+        pool.release(again);
+
+    }
+
+    @Test
+    public void testDoubleRelease() throws Exception {
+
+        ScriptEngine engine = pool.borrow();
+        pool.release(engine);
+
+        try {
+            pool.release(engine);
+            fail("released twice");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        // no extra permit
+        assertEquals(1, pool.getAvailable());
+
+    }
+
+    @Test
+    public void testRun() throws Exception {
+
+        Script script = new ScriptLoader(ScriptEnginePoolTest.class.getClassLoader())
+                .load(new ByteArrayInputStream("x * 2;\n".getBytes(StandardCharsets.UTF_8)));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2 * i, ((Number) pool.run(script, ImmutableMap.of("x", i))).intValue());
+        }
+
+        assertEquals(1, pool.getAvailable());
+        assertEquals(3, pool.getBorrowCount());
+
+    }
+
+    @Test
+    public void testRunIsolated() throws Exception {
+
+        Script script = new ScriptLoader(ScriptEnginePoolTest.class.getClassLoader())
+                .load(new ByteArrayInputStream("if (typeof counter === 'undefined') counter = 0; ++counter;\n".getBytes(StandardCharsets.UTF_8)));
+
+        // runs never see what earlier runs left in their scope
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, ((Number) pool.run(script)).intValue());
+        }
+
+    }
+
+    @Test
+    public void testEngineFailure() throws Exception {
+
+        final ScriptEngineFactory nashorn = new ScriptEngineManager().getEngineByName("nashorn").getFactory();
+        final AtomicBoolean failing = new AtomicBoolean(true);
+
+        ScriptEngineFactory factory = (ScriptEngineFactory) Proxy.newProxyInstance(ScriptEnginePoolTest.class.getClassLoader(),
+                new Class<?>[] {ScriptEngineFactory.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getScriptEngine") && failing.get()) {
+                            throw new IllegalStateException("engine failure");
+                        }
+                        return method.invoke(nashorn, args);
+                    }
+                });
+
+        ScriptEnginePool flaky = new ScriptEnginePool(factory, 1);
+
+        try {
+            flaky.borrow();
+            fail("engine created");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        // neither the permit nor the slot is lost
+        assertEquals(1, flaky.getAvailable());
+
+        failing.set(false);
+        flaky.release(flaky.borrow());
+        assertEquals(1, flaky.getAvailable());
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+public class ScriptExecutorTest {
+
+    private final ScriptLoader loader = new ScriptLoader(ScriptExecutorTest.class.getClassLoader());
+    private ScriptEnginePool pool;
+    private ScriptExecutor executor;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+        assumeNotNull(new ScriptEngineManager().getEngineByName("nashorn"));
+    }
+
+    @Before
+    public void setUp() {
+        pool = new ScriptEnginePool("nashorn", 1);
+        executor = new ScriptExecutor(pool);
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+        pool.close();
+    }
+
+    @Test
+    public void testRunAsync() throws Exception {
+
+        Script script = load("x * 2;\n");
+
+        assertEquals(42, ((Number) executor.runAsync(script, ImmutableMap.of("x", 21)).get(10, TimeUnit.SECONDS)).intValue());
+        assertEquals(1, pool.getAvailable());
+
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        ListenableFuture<Object> future = executor.runAsync(load("throw 'boom';\n"));
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("failure not propagated");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ScriptException);
+        }
+
+        assertEquals(1, pool.getAvailable());
+
+    }
+
+    @Test
+    public void testCancelWhileWaiting() throws Exception {
+
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+
+        ExecutorService single = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                thread.set(new Thread(task));
+                return thread.get();
+            }
+        });
+
+        ScriptExecutor custom = new ScriptExecutor(pool, single);
+
+        try {
+
+            Script script = load("1;\n");
+
+            // the only engine is taken, so the run waits for it
+            ScriptEngine engine = pool.borrow();
+            ListenableFuture<Object> future = custom.runAsync(script);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+                assertTrue("not waiting in time", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+
+            assertTrue(future.cancel(true));
+            pool.release(engine);
+
+            // the cancelled run has not taken an engine, and the thread is available again
+            assertEquals(1, ((Number) custom.runAsync(script).get(10, TimeUnit.SECONDS)).intValue());
+            assertEquals(2, pool.getBorrowCount());
+            assertEquals(1, pool.getAvailable());
+
+        } finally {
+            custom.close();
+            single.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        ScriptExecutor custom = new ScriptExecutor(pool, single);
+
+        try {
+
+            // a custom executor is left alone
+            custom.close();
+            assertFalse(single.isShutdown());
+
+            executor.close();
+
+            try {
+                executor.runAsync(load("1;\n"));
+                fail("run accepted after close");
+            } catch (RejectedExecutionException ex) {
+                // expected
+            }
+
+        } finally {
+            single.shutdown();
+        }
+
+    }
+
+    private Script load(String text) throws Exception {
+        return loader.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
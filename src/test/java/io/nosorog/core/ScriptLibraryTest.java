@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableSet;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import javax.script.ScriptException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScriptLibraryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private ScriptLibrary library;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Before
+    public void setUp() {
+        root = folder.getRoot().toPath();
+        library = new ScriptLibrary(new ScriptLoader(ScriptLibraryTest.class.getClassLoader()), 2);
+    }
+
+    @Test
+    public void testLoadDirectory() throws Exception {
+
+        Path original = write("a.js", named("A"));
+        write("sub/b.js", named("B"));
+        write("sub/c.txt", named("C"));
+        Path duplicate = write("sub/d.js", named("A"));
+        Path anonymous = write("e.js", "1;\n");
+
+        Map<String, Exception> failures = library.loadDirectory(root);
+
+        assertEquals(ImmutableSet.of("A", "B"), names());
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(anonymous.toString()).getMessage().contains("script has no @Name"));
+
+        // of the two scripts named A, whichever is loaded last fails
+        Exception ex = failures.containsKey(duplicate.toString()) ? failures.get(duplicate.toString()) : failures.get(original.toString());
+        assertTrue(ex instanceof ScriptException);
+        assertTrue(ex.getMessage().contains("duplicate script name: A"));
+
+    }
+
+    @Test
+    public void testLoadDirectoryGlob() throws Exception {
+
+        write("a.js", named("A"));
+        write("b.nsr", named("B"));
+
+        assertEquals(0, library.loadDirectory(root, "*.nsr").size());
+        assertEquals(ImmutableSet.of("B"), names());
+
+    }
+
+    @Test
+    public void testLoadClasspath() throws Exception {
+
+        write("scripts/a.js", named("A"));
+        write("scripts/sub/b.js", named("B"));
+        write("other/c.js", named("C"));
+        write("scripts/d.js", "1;\n");
+
+        ClassLoader classLoader = new URLClassLoader(new URL[] {root.toUri().toURL()}, ScriptLibraryTest.class.getClassLoader());
+        library = new ScriptLibrary(new ScriptLoader(classLoader));
+
+        Map<String, Exception> failures = library.loadClasspath("scripts/");
+
+        assertEquals(ImmutableSet.of("A", "B"), names());
+        assertEquals(ImmutableSet.of("scripts/d.js"), failures.keySet());
+
+    }
+
+    @Test
+    public void testReload() throws Exception {
+
+        Path file = write("a.js", named("A"));
+        library.loadDirectory(root);
+
+        Script first = library.get("A");
+        Script second = library.reload(write("a.js", script("@Name(\"A\")", "2;")));
+
+        assertSame(second, library.get("A"));
+        assertEquals(1, library.getScripts().size());
+        assertTrue(second != first);
+
+        // a name change replaces the previous name
+        Script renamed = library.reload(write("a.js", named("Z")));
+
+        assertSame(renamed, library.get("Z"));
+        assertNull(library.get("A"));
+        assertEquals(1, library.getScripts().size());
+
+        assertSame(renamed, library.unload(file));
+        assertNull(library.get("Z"));
+        assertNull(library.unload(file));
+
+    }
+
+    @Test
+    public void testReloadFailures() throws Exception {
+
+        Path file = write("a.js", named("A"));
+        write("b.js", named("B"));
+        library.loadDirectory(root);
+
+        Script script = library.get("A");
+
+        try {
+            library.reload(write("a.js", "1;\n"));
+            fail("script without @Name reloaded");
+        } catch (ScriptException ex) {
+            // expected
+        }
+
+        try {
+            library.reload(write("a.js", named("B")));
+            fail("duplicate name reloaded");
+        } catch (ScriptException ex) {
+            assertTrue(ex.getMessage().contains("duplicate script name: B"));
+        }
+
+        try {
+            library.reload(write("c.js", named("A")));
+            fail("duplicate name loaded");
+        } catch (ScriptException ex) {
+            assertTrue(ex.getMessage().contains("duplicate script name: A"));
+        }
+
+        // the previous version stays in effect
+        assertSame(script, library.get("A"));
+        assertEquals(ImmutableSet.of("A", "B"), names());
+        assertSame(script, library.unload(file));
+
+    }
+
+    private ImmutableSet<String> names() {
+
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+
+        for (Script script : library.getScripts()) {
+            names.add(script.getName());
+        }
+
+        return names.build();
+
+    }
+
+    private Path write(String file, String text) throws Exception {
+        Path path = root.resolve(file);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String named(String name) {
+        return script(String.format("@Name(\"%s\")", name), "1;");
+    }
+
+}
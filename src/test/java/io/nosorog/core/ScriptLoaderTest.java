@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.nosorog.core;
+
+import io.nosorog.core.internal.HeaderScanner;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class ScriptLoaderTest {
+
+    private static final String[] SCRIPTS = {
+        "",
+        "1;",
+        "1;\n",
+        "/**\n * @Name(\"Foo\")\n */\nprint('foo');\n",
+        "/**\r\n * @Name(\"Foo\")\r\n * import java.util.List\r\n */\r\nprint('foo');\r\n",
+        "/**\r * @Inject List list\r */\rprint(list);",
+        "\n\n  /**  \n\n * @Description(\"\u0444\u0443\")\n\t*/\n\n\nfoo;\n\n",
+        "/**\n * import java.util.*\n */\r\n// mixed line endings\nfoo;\r",
+        "// no header\n/* not a header */\nfoo;\n"
+    };
+
+    @Test
+    public void testBody() throws IOException {
+        for (String script : SCRIPTS) {
+            assertEquals(script, copyLines(script), ScriptLoader.getBody(script));
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+
+        for (String script : SCRIPTS) {
+
+            HeaderScanner scanner = new HeaderScanner(script);
+            List<String> header = new ArrayList<>();
+            String line;
+
+            while ((line = scanner.next()) != null) {
+                header.add(line);
+            }
+
+            assertEquals(script, readHeader(script), header);
+
+        }
+
+    }
+
+    // the body as ScriptLoader used to build it
+    private static String copyLines(String script) throws IOException {
+
+        StringWriter body = new StringWriter();
+        PrintWriter pw = new PrintWriter(body);
+        BufferedReader reader = new BufferedReader(new StringReader(script));
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            pw.println(line);
+        }
+
+        return body.toString();
+
+    }
+
+    // the header lines as ScriptLoader used to collect them, up to the end of the first doc comment
+    private static List<String> readHeader(String script) throws IOException {
+
+        List<String> header = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new StringReader(script));
+        String line;
+        boolean flag = false;
+
+        while ((line = reader.readLine()) != null) {
+
+            if (StringUtils.strip(line).equals("/**")) {
+                flag = true;
+                continue;
+            }
+
+            if (StringUtils.strip(line).equals("*/")) {
+                if (flag) {
+                    break;
+                }
+                continue;
+            }
+
+            if (flag) {
+                header.add(line);
+            }
+
+        }
+
+        return header;
+
+    }
+
+}
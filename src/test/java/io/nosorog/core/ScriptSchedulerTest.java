@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.collect.ImmutableSet;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class ScriptSchedulerTest {
+
+    // startup scripts record their names here
+    public static final List<String> STARTED = new CopyOnWriteArrayList<>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScriptLibrary library = new ScriptLibrary(new ScriptLoader(ScriptSchedulerTest.class.getClassLoader()));
+    private ScriptEnginePool pool;
+    private ScriptScheduler scheduler;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+        assumeNotNull(new ScriptEngineManager().getEngineByName("nashorn"));
+    }
+
+    @Before
+    public void setUp() {
+        STARTED.clear();
+        pool = new ScriptEnginePool("nashorn", 2);
+        scheduler = new ScriptScheduler(library, pool, 2, 4);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+        pool.close();
+    }
+
+    @Test
+    public void testStartup() throws Exception {
+
+        write("a.js", startup("A"));
+        write("b.js", startup("B", "A"));
+        write("c.js", startup("C", "A", "B"));
+        assertEquals(0, library.loadDirectory(folder.getRoot().toPath()).size());
+
+        assertEquals(0, scheduler.start().size());
+        assertEquals(ImmutableSet.of("A", "B", "C"), ImmutableSet.copyOf(STARTED));
+        assertTrue(STARTED.indexOf("A") < STARTED.indexOf("B"));
+        assertTrue(STARTED.indexOf("B") < STARTED.indexOf("C"));
+
+    }
+
+    @Test
+    public void testDependencyFailure() throws Exception {
+
+        // nothing is ready in the first pass, and P is visited before Q fails
+        write("p.js", startup("P", "Q"));
+        write("q.js", startup("Q", "X"));
+        assertEquals(0, library.loadDirectory(folder.getRoot().toPath()).size());
+
+        Map<String, Exception> failures = scheduler.start();
+
+        assertEquals("unknown dependency: X", failures.get("Q").getMessage());
+        assertEquals("dependency failed: Q", failures.get("P").getMessage());
+
+    }
+
+    @Test
+    public void testStartupFailures() throws Exception {
+
+        write("r.js", startup("R", "S"));
+        write("s.js", startup("S", "R"));
+        write("t.js", script("@Name(\"T\")", "@Startup", "throw 'boom';"));
+        write("u.js", startup("U", "T"));
+        assertEquals(0, library.loadDirectory(folder.getRoot().toPath()).size());
+
+        Map<String, Exception> failures = scheduler.start();
+
+        assertEquals("circular dependency", failures.get("R").getMessage());
+        assertEquals("circular dependency", failures.get("S").getMessage());
+        assertTrue(failures.get("T") instanceof ScriptException);
+        assertEquals("dependency failed: T", failures.get("U").getMessage());
+        assertEquals(0, STARTED.size());
+
+    }
+
+    @Test
+    public void testInvalidAnnotations() throws Exception {
+
+        write("a.js", script("@Name(\"A\")", "@Startup(dependsOn = 1)", "1;"));
+        write("b.js", script("@Name(\"B\")", "@Schedule(\"soon\")", "1;"));
+        write("c.js", script("@Name(\"C\")", "@Schedule(\"0s\")", "1;"));
+
+        Map<String, Exception> failures = library.loadDirectory(folder.getRoot().toPath());
+
+        assertEquals(3, failures.size());
+
+        for (Exception ex : failures.values()) {
+            assertTrue(ex instanceof ScriptException);
+        }
+
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+
+        write("a.js", script("@Name(\"A\")", "@Schedule(\"20ms\")", "1;"));
+        library.loadDirectory(folder.getRoot().toPath());
+        scheduler.start();
+
+        // scheduled scripts loaded after start are picked up as well
+        library.reload(write("b.js", script("@Name(\"B\")", "@Schedule(\"20ms\")", "1;")));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (runs("A") == 0 || runs("B") == 0) {
+            assertTrue("not run in time", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+
+    }
+
+    @Test
+    public void testReschedule() throws Exception {
+
+        write("a.js", script("@Name(\"A\")", "@Schedule(\"1h\")", "1;"));
+        library.loadDirectory(folder.getRoot().toPath());
+        scheduler.start();
+
+        ScriptScheduler.Job job = job("A");
+        assertEquals(TimeUnit.HOURS.toNanos(1), job.getPeriodNanos());
+
+        library.reload(write("a.js", script("@Name(\"A\")", "@Schedule(\"20ms\")", "1;")));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (job.getRunCount() == 0) {
+            assertTrue("not rescheduled in time", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+
+        // the job is kept along with its statistics
+        assertSame(job, job("A"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), job.getPeriodNanos());
+
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+
+        write("a.js", script("@Name(\"A\")", "@Schedule(\"20ms\")", "1;"));
+        Path b = write("b.js", script("@Name(\"B\")", "@Schedule(\"20ms\")", "1;"));
+        library.loadDirectory(folder.getRoot().toPath());
+        scheduler.start();
+
+        library.reload(write("a.js", script("@Name(\"A\")", "1;")));
+        library.unload(b);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (!scheduler.getJobs().isEmpty()) {
+            assertTrue("not cancelled in time", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+
+        assertNull(job("A"));
+        assertNotNull(library.get("A"));
+
+    }
+
+    private long runs(String name) {
+        ScriptScheduler.Job job = job(name);
+        return job == null ? 0 : job.getRunCount();
+    }
+
+    private ScriptScheduler.Job job(String name) {
+
+        for (ScriptScheduler.Job job : scheduler.getJobs()) {
+            if (job.getName().equals(name)) {
+                return job;
+            }
+        }
+
+        return null;
+
+    }
+
+    private Path write(String file, String text) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(file), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String startup(String name, String... dependsOn) {
+
+        StringBuilder names = new StringBuilder();
+
+        for (String dependency : dependsOn) {
+            names.append(names.length() == 0 ? "" : ", ").append('"').append(dependency).append('"');
+        }
+
+        return script(
+                String.format("@Name(\"%s\")", name),
+                String.format("@Startup(dependsOn = {%s})", names),
+                String.format("Java.type('%s').STARTED.add('%s');", ScriptSchedulerTest.class.getName(), name));
+
+    }
+
+}
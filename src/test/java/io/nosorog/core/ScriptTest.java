@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+public class ScriptTest {
+
+    private static final String SCRIPT = script(
+            "import java.util.Collections",
+            "import java.util.List",
+            "import java.util.Map",
+            "",
+            "@Inject List list",
+            "@Inject Map map",
+            "",
+            "Collections.nCopies(x, list).size() + ':' + list;");
+
+    private final ScriptLoader loader = new ScriptLoader(ScriptTest.class.getClassLoader());
+    private ScriptEngine engine;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Before
+    public void setUp() {
+        engine = new ScriptEngineManager().getEngineByName("nashorn");
+        assumeNotNull(engine);
+    }
+
+    @Test
+    public void testRunWith() throws Exception {
+
+        Script script = load(SCRIPT);
+        int resolved = StubContainer.RESOLVED.get();
+        int released = StubContainer.RELEASED.get();
+
+        assertEquals("1:list", script.runWith(engine, ImmutableMap.of("x", 1)));
+        assertEquals("2:list", script.runWith(engine, ImmutableMap.of("x", 2)));
+
+        // map is never used, so it is never resolved
+        assertEquals(2, StubContainer.RESOLVED.get() - resolved);
+        assertEquals(2, StubContainer.RELEASED.get() - released);
+
+        // the engine default context is left untouched
+        assertNull(engine.getBindings(ScriptContext.ENGINE_SCOPE).get("x"));
+        assertNull(engine.getBindings(ScriptContext.ENGINE_SCOPE).get("list"));
+
+    }
+
+    @Test
+    public void testVariablesRemoved() throws Exception {
+
+        Script script = load("typeof y;");
+
+        assertEquals("number", script.runWith(engine, ImmutableMap.of("y", 1)));
+        assertEquals("undefined", script.runWith(engine));
+
+    }
+
+    @Test
+    public void testBindingsRemove() throws Exception {
+
+        Bindings bindings = load(SCRIPT).getBindings();
+        int resolved = StubContainer.RESOLVED.get();
+
+        try {
+
+            assertEquals("list", bindings.get("list"));
+            assertEquals("list", bindings.remove("list"));
+            assertNull(bindings.get("list"));
+            assertFalse(bindings.containsKey("list"));
+
+            // never resolved, so there is nothing to return
+            assertNull(bindings.remove("map"));
+            assertNull(bindings.get("map"));
+
+            assertEquals(1, StubContainer.RESOLVED.get() - resolved);
+
+        } finally {
+            ((Closeable) bindings).close();
+        }
+
+    }
+
+    @Test
+    public void testConcurrentRuns() throws Exception {
+
+        final Script script = load(SCRIPT);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+
+            List<Future<Object>> results = new ArrayList<>();
+
+            for (int i = 1; i <= 200; i++) {
+                final int x = i;
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws ScriptException {
+                        return script.runWith(engine, ImmutableMap.of("x", x));
+                    }
+                }));
+            }
+
+            for (int i = 1; i <= 200; i++) {
+                assertEquals(i + ":list", results.get(i - 1).get());
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testRunIsolated() throws Exception {
+        assertEquals("list", load(script("import java.util.List", "@Inject List list", "list;")).runIsolated(engine));
+    }
+
+    @Test
+    public void testRunIsolatedScope() throws Exception {
+
+        Script script = load(script("if (typeof counter === 'undefined') counter = 0; ++counter;"));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, ((Number) script.runIsolated(engine)).intValue());
+        }
+
+        assertEquals(2, ((Number) script.runIsolated(engine, ImmutableMap.of("counter", 1))).intValue());
+
+    }
+
+    @Test
+    public void testRunIsolatedImports() throws Exception {
+
+        Script script = load(script("import java.util.ArrayList", "import static java.lang.Math.max", "new ArrayList().size() + max(1, 2);"));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, ((Number) script.runIsolated(engine)).intValue());
+        }
+
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+
+        Script script = load(SCRIPT);
+        List<Map<String, ?>> records = ImmutableList.<Map<String, ?>>of(
+                ImmutableMap.of("x", 1), ImmutableMap.of("x", 2), ImmutableMap.of("x", 3));
+
+        int resolved = StubContainer.RESOLVED.get();
+        int released = StubContainer.RELEASED.get();
+
+        List<Object> sink = new ArrayList<>();
+        script.runBatch(engine, records, sink);
+
+        assertEquals(ImmutableList.of("1:list", "2:list", "3:list"), sink);
+        assertEquals(1, StubContainer.RESOLVED.get() - resolved);
+        assertEquals(1, StubContainer.RELEASED.get() - released);
+
+        assertEquals(sink, ImmutableList.copyOf(script.runBatch(engine, records)));
+        assertEquals(2, StubContainer.RELEASED.get() - released);
+
+    }
+
+    @Test
+    public void testBatchClosed() throws Exception {
+
+        Script script = load(SCRIPT);
+        List<Map<String, ?>> records = ImmutableList.<Map<String, ?>>of(ImmutableMap.of("x", 1), ImmutableMap.of("x", 2));
+        int released = StubContainer.RELEASED.get();
+
+        Iterator<Object> it = script.runBatch(engine, records).iterator();
+
+        try {
+            assertEquals("1:list", it.next());
+            // runs with the same engine may be interleaved with the iteration
+            assertEquals("3:list", script.runWith(engine, ImmutableMap.of("x", 3)));
+        } finally {
+            ((Closeable) it).close();
+        }
+
+        assertEquals(2, StubContainer.RELEASED.get() - released);
+
+    }
+
+    @Test
+    public void testBatchScope() throws Exception {
+
+        Script script = load(script("if (typeof counter === 'undefined') counter = 0; ++counter;"));
+        List<Map<String, ?>> records = ImmutableList.<Map<String, ?>>of(ImmutableMap.<String, Object>of(), ImmutableMap.<String, Object>of());
+
+        // state persists within a batch, but not from one batch to another
+        for (int i = 0; i < 2; i++) {
+            List<Object> sink = new ArrayList<>();
+            script.runBatch(engine, records, sink);
+            assertEquals(2, ((Number) sink.get(1)).intValue());
+        }
+
+    }
+
+    @Test
+    public void testEntry() throws Exception {
+
+        Script script = load(script(
+                "import java.util.List",
+                "",
+                "@Entry(\"handle\")",
+                "@Inject List list",
+                "var calls = 0;\nfunction handle(a) { calls++; return a + ':' + list + ':' + calls; }"));
+
+        assertEquals("handle", script.getEntry());
+        assertEquals("a:list:1", script.invoke(engine, "a"));
+        assertEquals("b:list:2", script.invoke(engine, "b"));
+
+        int released = StubContainer.RELEASED.get();
+        script.release(engine);
+        assertEquals(1, StubContainer.RELEASED.get() - released);
+
+        // evaluated again after release
+        assertEquals("c:list:1", script.invoke(engine, "c"));
+
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testEntryMissing() throws Exception {
+        load(script("@Entry(\"nope\")", "1;")).invoke(engine);
+    }
+
+    @Test(expected = ScriptException.class)
+    public void testEntryInvalid() throws Exception {
+        load(script("@Entry(handle)", "1;"));
+    }
+
+    @Test
+    public void testCacheable() throws Exception {
+
+        Script script = load(script("@Cacheable(key = \"x\", maxSize = 2)", "x + ':' + y;"));
+
+        assertTrue(script.isCacheable());
+        assertEquals("1:a", script.runWith(engine, ImmutableMap.of("x", 1, "y", "a")));
+        // y is not part of the key
+        assertEquals("1:a", script.runWith(engine, ImmutableMap.of("x", 1, "y", "b")));
+        assertEquals("2:b", script.runWith(engine, ImmutableMap.of("x", 2, "y", "b")));
+        assertEquals("3:b", script.runWith(engine, ImmutableMap.of("x", 3, "y", "b")));
+
+        assertEquals(1, script.getCacheHitCount());
+        assertEquals(3, script.getCacheMissCount());
+        assertEquals(1, script.getCacheEvictionCount());
+
+    }
+
+    @Test
+    public void testCacheableScriptObject() throws Exception {
+
+        Script script = load(script("@Cacheable", "({a: 1});"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                script.runWith(engine);
+                fail("script object cached");
+            } catch (ScriptException ex) {
+                assertEquals(0, script.getCacheHitCount());
+            }
+        }
+
+    }
+
+    @Test
+    public void testCacheableInvalid() throws Exception {
+
+        String[] annotations = {
+            "@Cacheable(maxSize = \"x\")",
+            "@Cacheable(maxSize = -1)",
+            "@Cacheable(ttl = 5)",
+            "@Cacheable(ttl = \"never\")",
+            "@Cacheable(key = 1)",
+            "@Cacheable({\"a\", 2})"
+        };
+
+        for (String annotation : annotations) {
+            try {
+                load(script(annotation, "1;"));
+                fail(annotation);
+            } catch (ScriptException ex) {
+                // expected
+            }
+        }
+
+        assertTrue(load(script("@Cacheable(maxSize = 10_000L, ttl = \"5m\")", "1;")).isCacheable());
+
+    }
+
+    @Test
+    public void testPackageImports() throws Exception {
+
+        // java.awt.List is shadowed by the explicit import
+        Script script = load(script("import java.util.*", "import java.awt.*", "import java.util.List",
+                "[new ArrayList().size(), typeof NoSuchClass, List.class.getName(), Point.class.getName()].join();"));
+
+        assertEquals("0,undefined,java.util.List,java.awt.Point", script.runWith(engine));
+        assertEquals("0,undefined,java.util.List,java.awt.Point", script.runIsolated(engine));
+
+    }
+
+    @Test
+    public void testPackagePrelude() throws Exception {
+
+        // packages are indexed from the URLs of a URLClassLoader
+        ClassLoader classLoader = new URLClassLoader(new URL[] {Joiner.class.getProtectionDomain().getCodeSource().getLocation()},
+                ScriptTest.class.getClassLoader());
+        String text = script("import com.google.common.base.*", "import java.util.List", "1;");
+        Script script = new ScriptLoader(classLoader).load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+        // expanded on demand, for callers evaluating the prelude themselves
+        assertTrue(script.getPrelude().contains("Java.type('com.google.common.base.Joiner')"));
+        assertTrue(script.getPrelude().contains("Java.type('java.util.List')"));
+        assertSame(script.getPrelude(), script.getPrelude());
+
+    }
+
+    private Script load(String text) throws Exception {
+        return loader.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // wraps header lines into a doc comment, the last line is the body
+    static String script(String... lines) {
+
+        StringBuilder text = new StringBuilder("/**\n");
+
+        for (int i = 0; i < lines.length - 1; i++) {
+            text.append(" * ").append(lines[i]).append('\n');
+        }
+
+        return text.append(" */\n").append(lines[lines.length - 1]).append('\n').toString();
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core;
+
+import com.google.common.base.Predicate;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static io.nosorog.core.ScriptTest.script;
+import static org.junit.Assert.assertTrue;
+
+public class ScriptWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScriptLibrary library = new ScriptLibrary(new ScriptLoader(ScriptWatcherTest.class.getClassLoader()));
+    private Path root;
+    private ScriptWatcher watcher;
+
+    @BeforeClass
+    public static void setUpClass() {
+        StubContainer.install();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.getRoot().toPath();
+        watcher = new ScriptWatcher(library, root, "*.js", 50);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+    }
+
+    @Test
+    public void testReload() throws Exception {
+
+        Path file = write(root.resolve("a.js"), script("@Name(\"A\")", "1;"));
+        await(loaded("A"));
+
+        final Script first = library.get("A");
+        write(file, script("@Name(\"A\")", "2;"));
+
+        await(new Predicate<ScriptLibrary>() {
+            @Override
+            public boolean apply(ScriptLibrary library) {
+                return library.get("A") != null && library.get("A") != first;
+            }
+        });
+
+        Files.delete(file);
+
+        await(new Predicate<ScriptLibrary>() {
+            @Override
+            public boolean apply(ScriptLibrary library) {
+                return library.get("A") == null;
+            }
+        });
+
+    }
+
+    @Test
+    public void testNewDirectory() throws Exception {
+
+        // written before the directory is registered, and picked up by the scan
+        Path dir = Files.createDirectories(root.resolve("sub/dir"));
+        write(dir.resolve("b.js"), script("@Name(\"B\")", "1;"));
+        await(loaded("B"));
+
+        write(dir.resolve("c.js"), script("@Name(\"C\")", "1;"));
+        await(loaded("C"));
+
+    }
+
+    @Test
+    public void testVanishedDirectory() throws Exception {
+
+        // directories deleted before they can be registered do not stop the watcher
+        for (int i = 0; i < 20; i++) {
+            Path dir = Files.createDirectories(root.resolve("tmp" + i + "/sub"));
+            Files.delete(dir);
+            Files.delete(dir.getParent());
+        }
+
+        write(root.resolve("d.js"), script("@Name(\"D\")", "1;"));
+        await(loaded("D"));
+
+    }
+
+    private void await(Predicate<ScriptLibrary> condition) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (!condition.apply(library)) {
+            assertTrue("not reloaded in time", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+
+    }
+
+    private static Predicate<ScriptLibrary> loaded(final String name) {
+        return new Predicate<ScriptLibrary>() {
+            @Override
+            public boolean apply(ScriptLibrary library) {
+                return library.get(name) != null;
+            }
+        };
+    }
+
+    private static Path write(Path file, String text) throws Exception {
+        return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.nosorog.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.spi.AnnotatedField;
+import javax.enterprise.inject.spi.AnnotatedType;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.CDI;
+import javax.enterprise.inject.spi.CDIProvider;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.util.TypeLiteral;
+
+/**
+ * Minimal stand-in for a CDI container, so that tests and benchmarks run without an application server.
+ *
+ * <br><br>Only the {@link BeanManager} methods used by the binder are implemented.
+ * Every injection point resolves to the name of the injected field. Resolved references
+ * and released creational contexts are counted.
+ */
+class StubContainer extends CDI<Object> implements CDIProvider {
+
+    private static final StubContainer INSTANCE = new StubContainer();
+    private static boolean installed;
+
+    static final AtomicInteger RESOLVED = new AtomicInteger();
+    static final AtomicInteger RELEASED = new AtomicInteger();
+
+    private final BeanManager beanManager = proxy(BeanManager.class, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "createAnnotatedType":
+                    return annotatedType((Class<?>) args[0]);
+                case "createInjectionPoint":
+                    return injectionPoint(((AnnotatedField<?>) args[0]).getJavaMember());
+                case "validate":
+                    return null;
+                case "createCreationalContext":
+                    return creationalContext();
+                case "getInjectableReference":
+                    RESOLVED.incrementAndGet();
+                    return ((InjectionPoint) args[0]).getMember().getName();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    });
+
+    // the provider can only be set once per JVM
+    static synchronized void install() {
+        if (!installed) {
+            CDI.setCDIProvider(INSTANCE);
+            installed = true;
+        }
+    }
+
+    @Override
+    public CDI<Object> getCDI() {
+        return this;
+    }
+
+    @Override
+    public BeanManager getBeanManager() {
+        return beanManager;
+    }
+
+    @Override
+    public Instance<Object> select(Annotation... qualifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <U> Instance<U> select(Class<U> subtype, Annotation... qualifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <U> Instance<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isUnsatisfied() {
+        return false;
+    }
+
+    @Override
+    public boolean isAmbiguous() {
+        return false;
+    }
+
+    @Override
+    public void destroy(Object instance) {
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object get() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static AnnotatedType<?> annotatedType(Class<?> clazz) {
+
+        final List<AnnotatedField<?>> fields = new ArrayList<>();
+
+        for (final Field field : clazz.getDeclaredFields()) {
+            fields.add(proxy(AnnotatedField.class, new InvocationHandler() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "isAnnotationPresent":
+                            return field.isAnnotationPresent((Class<? extends Annotation>) args[0]);
+                        case "getJavaMember":
+                            return field;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+            }));
+        }
+
+        return proxy(AnnotatedType.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getFields")) {
+                    return new AbstractSet<AnnotatedField<?>>() {
+                        @Override
+                        public Iterator<AnnotatedField<?>> iterator() {
+                            return fields.iterator();
+                        }
+
+                        @Override
+                        public int size() {
+                            return fields.size();
+                        }
+                    };
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+    }
+
+    private static InjectionPoint injectionPoint(final Field field) {
+        return proxy(InjectionPoint.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getMember")) {
+                    return field;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static CreationalContext<?> creationalContext() {
+        return proxy(CreationalContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("release")) {
+                    RELEASED.incrementAndGet();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StubContainer.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+}
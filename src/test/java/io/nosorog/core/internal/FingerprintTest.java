@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.hash.HashCode;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFingerprint() throws Exception {
+
+        ClassLoader parent = FingerprintTest.class.getClassLoader();
+        HashCode fingerprint = Fingerprint.of(parent);
+
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, Fingerprint.of(parent));
+
+        Path dir = folder.getRoot().toPath();
+        HashCode empty = Fingerprint.of(new URLClassLoader(new URL[] {dir.toUri().toURL()}, parent));
+
+        assertNotEquals(fingerprint, empty);
+        assertEquals(empty, Fingerprint.of(new URLClassLoader(new URL[] {dir.toUri().toURL()}, parent)));
+
+        // a new entry changes the fingerprint of the ClassLoaders created afterwards
+        Files.write(dir.resolve("foo.js"), new byte[] {'1', ';'});
+        assertNotEquals(empty, Fingerprint.of(new URLClassLoader(new URL[] {dir.toUri().toURL()}, parent)));
+
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertNull(Fingerprint.of(new ClassLoader(FingerprintTest.class.getClassLoader()) {
+        }));
+    }
+
+}
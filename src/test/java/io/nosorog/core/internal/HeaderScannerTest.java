@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.nosorog.core.internal;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.Node;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class HeaderScannerTest {
+
+    @Test
+    public void testParseImport() throws ParseException {
+
+        String[] lines = {
+            "import java.util.List",
+            "import  java.util.List ",
+            "import java.util.*",
+            "import static java.lang.Math.max",
+            "import static java.lang.Math.*"
+        };
+
+        for (String line : lines) {
+            check(line, HeaderScanner.parseImport(line), JavaParser.parseImport(line + ";"));
+        }
+
+        assertNull(HeaderScanner.parseImport("import java.util.List;"));
+        assertNull(HeaderScanner.parseImport("import static"));
+
+    }
+
+    @Test
+    public void testParseAnnotation() throws ParseException {
+
+        String[] lines = {
+            "@Name(\"Foo\")",
+            "@Description( \"Foo bar\" )",
+            "@Schedule(\"5m\")",
+            "@Entry(\"handle\")"
+        };
+
+        for (String line : lines) {
+            check(line, HeaderScanner.parseAnnotation(line), JavaParser.parseAnnotation(line));
+        }
+
+        assertNull(HeaderScanner.parseAnnotation("@Startup(dependsOn = \"Foo\")"));
+        assertNull(HeaderScanner.parseAnnotation("@Entry(handle)"));
+
+    }
+
+    @Test
+    public void testParseField() throws ParseException {
+
+        String[] lines = {
+            "@Inject List list",
+            "@Inject  @Observes Event event",
+            "@Resource DataSource ds"
+        };
+
+        for (String line : lines) {
+            check(line, HeaderScanner.parseField(line), JavaParser.parseBodyDeclaration(line + ";"));
+        }
+
+        assertNull(HeaderScanner.parseField("@Inject java.util.List list"));
+        assertNull(HeaderScanner.parseField("@Inject List<String> list"));
+
+    }
+
+    private static void check(String line, Node scanned, Node parsed) {
+        assertNotNull(line, scanned);
+        assertEquals(line, parsed, scanned);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MetadataTest {
+
+    private static final Metadata METADATA = new Metadata(
+            ImmutableList.of("@Name(\"Foo\")", "import java.util.List", "@Inject List list"),
+            "var List = Java.type('java.util.List');\n",
+            "list:java.util.List",
+            "io.nosorog.stub.Foo",
+            new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        Metadata metadata = roundTrip(METADATA);
+
+        assertEquals(METADATA.getHeader(), metadata.getHeader());
+        assertEquals(METADATA.getPrelude(), metadata.getPrelude());
+        assertEquals(METADATA.getStubSignature(), metadata.getStubSignature());
+        assertEquals(METADATA.getStubName(), metadata.getStubName());
+        assertArrayEquals(METADATA.getStub(), metadata.getStub());
+
+    }
+
+    @Test
+    public void testWithoutStub() throws IOException {
+
+        Metadata metadata = roundTrip(METADATA.withoutBytecode());
+
+        assertEquals(METADATA.getStubName(), metadata.getStubName());
+        assertNull(metadata.getStub());
+
+        metadata = roundTrip(METADATA.withoutStub());
+
+        assertEquals(METADATA.getPrelude(), metadata.getPrelude());
+        assertNull(metadata.getStubSignature());
+        assertNull(metadata.getStubName());
+
+    }
+
+    @Test
+    public void testOldVersion() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(1);
+        out.writeInt(0);
+
+        assertNull(Metadata.read(new ByteArrayInputStream(bytes.toByteArray())));
+
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+
+        byte[] bytes = write(METADATA);
+
+        try {
+            Metadata.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+            fail("truncated entry read");
+        } catch (EOFException ex) {
+            // expected
+        }
+
+    }
+
+    private static Metadata roundTrip(Metadata metadata) throws IOException {
+        return Metadata.read(new ByteArrayInputStream(write(metadata)));
+    }
+
+    private static byte[] write(Metadata metadata) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        metadata.write(bytes);
+        return bytes.toByteArray();
+    }
+
+}
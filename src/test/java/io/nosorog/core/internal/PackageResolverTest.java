@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import com.google.common.collect.ImmutableList;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleScriptContext;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeNotNull;
+
+public class PackageResolverTest {
+
+    private PackageResolver resolver;
+    private ScriptEngine engine;
+
+    @Before
+    public void setUp() {
+
+        engine = new ScriptEngineManager().getEngineByName("nashorn");
+        assumeNotNull(engine);
+
+        ScriptContext context = new SimpleScriptContext();
+        context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+
+        resolver = new PackageResolver(engine, context, PackageResolverTest.class.getClassLoader(),
+                ImmutableList.of("java.util", "java.util.concurrent"));
+
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+
+        Object type = resolver.apply("ArrayList");
+
+        assertNotNull(type);
+        assertSame(type, resolver.apply("ArrayList"));
+        assertEquals(engine.eval("Java.type('java.util.ArrayList')"), type);
+        assertEquals(engine.eval("Java.type('java.util.concurrent.TimeUnit')"), resolver.apply("TimeUnit"));
+
+    }
+
+    @Test
+    public void testMiss() {
+        assertNull(resolver.apply("NoSuchClass"));
+        assertNull(resolver.apply("NoSuchClass"));
+        assertNull(resolver.apply("java.util.List"));
+        assertNull(resolver.apply("1st"));
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Dmitry Telegin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nosorog.core.internal;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PhaseStatsTest {
+
+    @Test
+    public void testRecord() {
+
+        PhaseStats stats = new PhaseStats();
+
+        assertEquals(0, stats.getMeanMillis(), 0);
+
+        stats.record(TimeUnit.MILLISECONDS.toNanos(1), false);
+        stats.record(TimeUnit.MILLISECONDS.toNanos(3), true);
+        stats.record(TimeUnit.MILLISECONDS.toNanos(2), true);
+
+        assertEquals(3, stats.getCount());
+        assertEquals(2, stats.getFailureCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(6), stats.getTotalNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), stats.getMaxNanos());
+        assertEquals(2, stats.getMeanMillis(), 1e-9);
+
+    }
+
+    @Test
+    public void testHistogram() {
+
+        PhaseStats stats = new PhaseStats();
+        long[] bounds = stats.getHistogramBounds();
+
+        assertEquals(bounds.length, stats.getHistogram().length);
+        assertEquals(1, bounds[0]);
+        assertEquals(Long.MAX_VALUE, bounds[bounds.length - 1]);
+
+        // bucket i counts durations below bounds[i] microseconds, and at least bounds[i - 1]
+        stats.record(500, false);
+        stats.record(TimeUnit.MICROSECONDS.toNanos(1), false);
+        stats.record(TimeUnit.MICROSECONDS.toNanos(3), false);
+        stats.record(TimeUnit.MICROSECONDS.toNanos(4), false);
+        stats.record(TimeUnit.MICROSECONDS.toNanos(1023), false);
+        stats.record(TimeUnit.MICROSECONDS.toNanos(1024), false);
+        stats.record(TimeUnit.HOURS.toNanos(1), false);
+
+        long[] expected = new long[bounds.length];
+        expected[0] = 1;
+        expected[1] = 1;
+        expected[2] = 1;
+        expected[3] = 1;
+        expected[10] = 1;
+        expected[11] = 1;
+        expected[bounds.length - 1] = 1;
+
+        assertArrayEquals(expected, stats.getHistogram());
+
+    }
+
+}